@@ -9,8 +9,10 @@ import org.sikuli.basics.Debug;
 import se.vidstige.jadb.AdbServerLauncher;
 import se.vidstige.jadb.JadbConnection;
 import se.vidstige.jadb.JadbDevice;
+import se.vidstige.jadb.JadbException;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 /**
@@ -100,6 +102,31 @@ public class ADBClient {
     return device;
   }
 
+  /**
+   * @return the shell of the attached device or null if no device attached
+   */
+  public static ADBShell getShell() {
+    final JadbDevice jadbDevice = getDevice();
+    if (jadbDevice == null) {
+      return null;
+    }
+    return new ADBShell() {
+      @Override
+      public String getSerial() {
+        return jadbDevice.getSerial();
+      }
+
+      @Override
+      public InputStream executeShell(String command, String... args) throws IOException {
+        try {
+          return jadbDevice.executeShell(command, args);
+        } catch (JadbException e) {
+          throw new IOException(e.getMessage(), e);
+        }
+      }
+    };
+  }
+
   //TODO: get device by id
 
   public boolean isValid() {
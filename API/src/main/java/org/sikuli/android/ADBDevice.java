@@ -9,14 +9,16 @@ import org.opencv.core.Mat;
 import org.opencv.imgproc.Imgproc;
 import org.sikuli.basics.Debug;
 import org.sikuli.basics.FileManager;
+import org.sikuli.basics.Profiler;
 import org.sikuli.script.RunTime;
 import org.sikuli.script.ScreenImage;
-import se.vidstige.jadb.JadbDevice;
-import se.vidstige.jadb.JadbException;
+
+import javax.imageio.ImageIO;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -36,7 +38,7 @@ public class ADBDevice {
     Debug.logx(level, "ADBDevice: " + message, args);
   }
 
-  private JadbDevice device = null;
+  private ADBShell shell = null;
   private int devW = -1;
   private int devH = -1;
   private ADBRobot robot = null;
@@ -58,10 +60,20 @@ public class ADBDevice {
   }
 
   public static ADBDevice init() {
+    return init(null);
+  }
+
+  /**
+   * initialize with the given shell (e.g. a local fake device for testing)
+   *
+   * @param shell the link to the device or null to use the device attached to the ADB server
+   * @return the device or null if not possible
+   */
+  public static ADBDevice init(ADBShell shell) {
     if (adbDevice == null) {
       adbDevice = new ADBDevice();
-      adbDevice.device = ADBClient.getDevice();
-      if (adbDevice.device == null) {
+      adbDevice.shell = shell == null ? ADBClient.getShell() : shell;
+      if (adbDevice.shell == null) {
         adbDevice = null;
       } else {
         adbDevice.deviceProps = Arrays.asList(adbDevice.exec("getprop").split("\n"));
@@ -97,6 +109,9 @@ public class ADBDevice {
   }
 
   public static void reset() {
+    if (adbDevice != null && adbDevice.inputChannel != null) {
+      adbDevice.inputChannel.stop();
+    }
     adbDevice = null;
     ADBClient.reset();
   }
@@ -115,7 +130,7 @@ public class ADBDevice {
   }
 
   public String getDeviceSerial() {
-    return device.getSerial();
+    return shell.getSerial();
   }
 
   public Rectangle getBounds() {
@@ -156,9 +171,22 @@ public class ADBDevice {
     return bImage;
   }
 
+  /**
+   * how a capture is transferred from the device
+   * <br>RAW: the full raw frame (devW * devH * 4 bytes) crosses the link, cropping is done on the host
+   * <br>ROWS: the raw frame is cut down to the rows of the requested region on the device,
+   * so only these rows cross the link (needs the toybox tools head/tail: Android 6+, otherwise RAW is used)
+   * <br>PNG: the full frame is PNG-compressed on the device, decoded and cropped on the host
+   */
+  public enum CaptureMode {RAW, ROWS, PNG}
+
+  public static CaptureMode captureMode = CaptureMode.ROWS;
+
+  private int rawHeaderSize = -1;
+
+  private static final Profiler.Timer tCapture = Profiler.timer("ADBDevice.capture");
+
   public Mat captureDeviceScreenMat(int x, int y, int w, int h) {
-    byte[] imagePrefix = new byte[12];
-    byte[] image = new byte[0];
     int actW = w;
     if (x + w > devW) {
       actW = devW - x;
@@ -167,10 +195,50 @@ public class ADBDevice {
     if (y + h > devH) {
       actH = devH - y;
     }
-    Debug timer = Debug.startTimer();
+    if (actW < 1 || actH < 1) {
+      log(-1, "captureDeviceScreenMat: [%d,%d %dx%d] not on device screen", x, y, w, h);
+      return null;
+    }
+    CaptureMode mode = captureMode;
+    if (mode == CaptureMode.ROWS && (deviceVersion < 6 || getRawHeaderSize() < 1)) {
+      mode = CaptureMode.RAW;
+    }
+    inputFlush();
+    Mat matImage = null;
+    long start = System.nanoTime();
+    try {
+      if (mode == CaptureMode.PNG) {
+        matImage = captureDeviceScreenPNG(x, y, actW, actH);
+      } else {
+        byte[] image;
+        if (mode == CaptureMode.ROWS) {
+          image = captureDeviceScreenRows(x, y, actW, actH);
+        } else {
+          image = captureDeviceScreenRaw(x, y, actW, actH);
+        }
+        if (image != null) {
+          Mat matOrg = new Mat(actH, actW, CvType.CV_8UC4);
+          matOrg.put(0, 0, image);
+          matImage = new Mat();
+          Imgproc.cvtColor(matOrg, matImage, Imgproc.COLOR_RGBA2BGR, 3);
+        }
+      }
+      long duration = System.nanoTime() - start;
+      if (Profiler.isOn()) {
+        tCapture.record(duration);
+      }
+      log(lvl, "captureDeviceScreenMat:%s [%d,%d %dx%d] %d", mode, x, y, actW, actH, duration / 1000000);
+    } catch (IOException e) {
+      log(-1, "captureDeviceScreenMat:%s [%d,%d %dx%d] %s", mode, x, y, actW, actH, e);
+    }
+    return matImage;
+  }
+
+  private byte[] captureDeviceScreenRaw(int x, int y, int actW, int actH) throws IOException {
+    byte[] imagePrefix = new byte[12];
+    InputStream stdout = shell.executeShell("screencap");
     try {
-      InputStream stdout = device.executeShell("screencap");
-      stdout.read(imagePrefix);
+      readFully(stdout, imagePrefix, 0, imagePrefix.length);
       if (imagePrefix[8] != 0x01) {
         log(-1, "captureDeviceScreenMat: image type not RGBA");
         return null;
@@ -179,31 +247,105 @@ public class ADBDevice {
         log(-1, "captureDeviceScreenMat: width or height differ from device values");
         return null;
       }
-      image = new byte[actW * actH * 4];
+      if (rawHeaderSize > imagePrefix.length) {
+        readFully(stdout, new byte[rawHeaderSize - imagePrefix.length], 0, rawHeaderSize - imagePrefix.length);
+      }
       int lenRow = devW * 4;
       byte[] row = new byte[lenRow];
       for (int count = 0; count < y; count++) {
-        stdout.read(row);
+        readFully(stdout, row, 0, lenRow);
       }
-      boolean shortRow = x + actW < devW;
-      for (int count = 0; count < actH; count++) {
-        if (shortRow) {
-          stdout.read(row);
-          System.arraycopy(row, x * 4, image, count * actW * 4, actW * 4);
-        } else {
-          stdout.read(image, count * actW * 4, actW * 4);
+      return readRows(stdout, x, actW, actH);
+    } finally {
+      stdout.close();
+    }
+  }
+
+  private byte[] captureDeviceScreenRows(int x, int y, int actW, int actH) throws IOException {
+    long lenRow = devW * 4;
+    long start = rawHeaderSize + y * lenRow;
+    InputStream stdout = shell.executeShell(String.format("screencap | tail -c +%d | head -c %d",
+            start + 1, actH * lenRow));
+    try {
+      return readRows(stdout, x, actW, actH);
+    } finally {
+      stdout.close();
+    }
+  }
+
+  private Mat captureDeviceScreenPNG(int x, int y, int actW, int actH) throws IOException {
+    BufferedImage bFull;
+    InputStream stdout = shell.executeShell("screencap -p");
+    try {
+      bFull = ImageIO.read(stdout);
+    } finally {
+      stdout.close();
+    }
+    if (bFull == null) {
+      log(-1, "captureDeviceScreenMat: PNG could not be decoded");
+      return null;
+    }
+    if (bFull.getWidth() != devW || bFull.getHeight() != devH) {
+      log(-1, "captureDeviceScreenMat: width or height differ from device values");
+      return null;
+    }
+    BufferedImage bImage = new BufferedImage(actW, actH, BufferedImage.TYPE_3BYTE_BGR);
+    Graphics2D g = bImage.createGraphics();
+    g.drawImage(bFull.getSubimage(x, y, actW, actH), 0, 0, null);
+    g.dispose();
+    byte[] bImageData = ((DataBufferByte) bImage.getRaster().getDataBuffer()).getData();
+    Mat matImage = new Mat(actH, actW, CvType.CV_8UC3);
+    matImage.put(0, 0, bImageData);
+    return matImage;
+  }
+
+  /**
+   * the size of the header, that screencap writes in front of the raw pixels
+   * (12 bytes up to Android 8, 16 bytes since Android 9), evaluated once per device
+   *
+   * @return the header size or 0 if not evaluable
+   */
+  private int getRawHeaderSize() {
+    if (rawHeaderSize < 0) {
+      rawHeaderSize = 0;
+      String total = exec("screencap | wc -c").trim();
+      try {
+        long headerSize = Long.parseLong(total) - (long) devW * devH * 4;
+        if (headerSize >= 12 && headerSize <= 64) {
+          rawHeaderSize = (int) headerSize;
         }
+      } catch (NumberFormatException e) {
       }
-      long duration = timer.end();
-      log(lvl, "captureDeviceScreenMat:[%d,%d %dx%d] %d", x, y, actW, actH, duration);
-    } catch (IOException | JadbException e) {
-      log(-1, "captureDeviceScreenMat: [%d,%d %dx%d] %s", x, y, actW, actH, e);
-    }
-    Mat matOrg = new Mat(actH, actW, CvType.CV_8UC4);
-    matOrg.put(0, 0, image);
-    Mat matImage = new Mat();
-    Imgproc.cvtColor(matOrg, matImage, Imgproc.COLOR_RGBA2BGR, 3);
-    return matImage;
+      log(lvl, "getRawHeaderSize: %d (%s)", rawHeaderSize, total);
+    }
+    return rawHeaderSize;
+  }
+
+  private byte[] readRows(InputStream stdout, int x, int actW, int actH) throws IOException {
+    byte[] image = new byte[actW * actH * 4];
+    int lenRow = devW * 4;
+    byte[] row = new byte[lenRow];
+    boolean shortRow = x + actW < devW || x > 0;
+    for (int count = 0; count < actH; count++) {
+      if (shortRow) {
+        readFully(stdout, row, 0, lenRow);
+        System.arraycopy(row, x * 4, image, count * actW * 4, actW * 4);
+      } else {
+        readFully(stdout, image, count * actW * 4, actW * 4);
+      }
+    }
+    return image;
+  }
+
+  private static void readFully(InputStream stream, byte[] buffer, int offset, int length) throws IOException {
+    int done = 0;
+    while (done < length) {
+      int count = stream.read(buffer, offset + done, length - done);
+      if (count < 0) {
+        throw new EOFException(String.format("expected %d bytes - got %d", length, done));
+      }
+      done += count;
+    }
   }
 
   private int byte2int(byte[] bytes, int start, int len) {
@@ -238,9 +380,9 @@ public class ADBDevice {
     InputStream stdout = null;
     String out = "";
     try {
-      stdout = device.executeShell(command, args);
+      stdout = shell.executeShell(command, args);
       out = inputStreamToString(stdout, "UTF-8");
-    } catch (IOException | JadbException e) {
+    } catch (IOException e) {
       log(-1, "exec: %s: %s", command, e);
     }
     return out;
@@ -254,12 +396,12 @@ public class ADBDevice {
         component = "power";
       }
       if (component.toLowerCase().contains("all")) {
-        stdout = device.executeShell("dumpsys");
+        stdout = shell.executeShell("dumpsys");
       } else {
-        stdout = device.executeShell("dumpsys", component);
+        stdout = shell.executeShell("dumpsys", component);
       }
       out = inputStreamToString(stdout, "UTF-8");
-    } catch (IOException | JadbException e) {
+    } catch (IOException e) {
       log(-1, "dumpsys: %s: %s", component, e);
     }
     return out;
@@ -310,7 +452,7 @@ public class ADBDevice {
         log(-1, "wakeUp: not possible - see log");
         return;
       }
-      device.executeShell("input", "keyevent", "26");
+      shell.executeShell("input", "keyevent", "26");
       while (0 < times--) {
         if (isDisplayOn()) {
           return;
@@ -347,31 +489,59 @@ public class ADBDevice {
     return null;
   }
 
-  public void inputKeyEvent(int key) {
-    try {
-      device.executeShell("input", "keyevent", Integer.toString(key));
-    } catch (Exception e) {
-      log(-1, "inputKeyEvent: %d did not work: %s", e.getMessage());
+  /**
+   * true: input actions (tap, swipe, keyevent, text) are queued and sent in batches (see ADBInputChannel)
+   * <br>false: each action is sent with its own shell command
+   */
+  public static boolean inputBatched = true;
+
+  /**
+   * max msec to wait for pending input actions before a capture
+   */
+  public static long inputFlushTimeout = 10000;
+
+  private ADBInputChannel inputChannel = null;
+
+  public synchronized ADBInputChannel getInputChannel() {
+    if (inputChannel == null) {
+      inputChannel = new ADBInputChannel(shell);
     }
+    return inputChannel;
   }
 
-  public void tap(int x, int y) {
-    try {
-      device.executeShell("input tap", Integer.toString(x), Integer.toString(y));
-    } catch (IOException | JadbException e) {
-      log(-1, "tap: %s", e);
+  /**
+   * wait until pending input actions are processed by the device
+   */
+  public void inputFlush() {
+    if (inputChannel != null) {
+      inputChannel.flush(inputFlushTimeout);
     }
   }
 
-  public void swipe(int x1, int y1, int x2, int y2) {
+  private void inputCommand(String command) {
+    if (inputBatched) {
+      getInputChannel().send(command);
+      return;
+    }
     try {
-      device.executeShell("input swipe", Integer.toString(x1), Integer.toString(y1),
-              Integer.toString(x2), Integer.toString(y2));
-    } catch (IOException | JadbException e) {
-      log(-1, "swipe: %s", e);
+      shell.executeShell(command);
+    } catch (IOException e) {
+      log(-1, "inputCommand: %s: %s", command, e);
     }
   }
 
+  public void inputKeyEvent(int key) {
+    inputCommand("input keyevent " + key);
+  }
+
+  public void tap(int x, int y) {
+    inputCommand(String.format("input tap %d %d", x, y));
+  }
+
+  public void swipe(int x1, int y1, int x2, int y2) {
+    inputCommand(String.format("input swipe %d %d %d %d", x1, y1, x2, y2));
+  }
+
   private String textBuffer = "";
   private boolean typing = false;
 
@@ -400,8 +570,14 @@ public class ADBDevice {
   public static float inputDelay = 0.05f;
 
   public void input(String text) {
+    if (inputBatched) {
+      inputCommand("input text " + ADBInputChannel.quote(text));
+      // the same time for the device to take the text as without batching
+      RunTime.pause(text.length() * inputDelay);
+      return;
+    }
     try {
-      device.executeShell("input text ", text);
+      shell.executeShell("input text ", text);
       RunTime.pause(text.length() * inputDelay);
     } catch (Exception e) {
       log(-1, "input: %s", e);
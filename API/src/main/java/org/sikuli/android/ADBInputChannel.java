@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.android;
+
+import org.sikuli.basics.Debug;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * pipelines the input commands (tap, swipe, keyevent, text) sent to a device
+ * <p>
+ * the actions are queued and return immediately. A sender thread collects all actions queued meanwhile
+ * and sends them as one command line (input ... ; input ...) to the device's shell,
+ * so the shell startup (often 100 - 300 msec) is paid once per batch and not per action.<br>
+ * flush() waits until all queued actions have been processed on the device
+ * (used before a capture, so it sees the result of the actions).
+ * <p>
+ * latency of an action: from being queued until the device's shell has finished the batch containing it
+ */
+public class ADBInputChannel {
+
+  private static int lvl = 3;
+
+  private static void log(int level, String message, Object... args) {
+    Debug.logx(level, "ADBInputChannel: " + message, args);
+  }
+
+  /**
+   * max number of actions sent in one shell command line
+   */
+  public static int maxBatch = 32;
+
+  private ADBShell shell;
+  private final LinkedList<Action> queue = new LinkedList<>();
+  private int pending = 0;
+  private Thread sender = null;
+  // the sender before stop(): might still be sending its last batch
+  private Thread stopped = null;
+
+  private long countActions = 0;
+  private long countBatches = 0;
+  private long latencySum = 0;
+  private long latencyMax = 0;
+  private long latencyLast = 0;
+
+  private static class Action {
+    String command;
+    long queued;
+
+    Action(String command) {
+      this.command = command;
+      queued = System.nanoTime();
+    }
+  }
+
+  public ADBInputChannel(ADBShell shell) {
+    this.shell = shell;
+  }
+
+  /**
+   * queue the command for sending to the device
+   *
+   * @param command a complete shell command (e.g. input tap 100 200)
+   */
+  public synchronized void send(String command) {
+    queue.add(new Action(command));
+    pending++;
+    if (sender == null) {
+      final Thread previous = stopped;
+      stopped = null;
+      sender = new Thread("ADBInputChannel") {
+        @Override
+        public void run() {
+          // one sender at a time: the batches go to the device in the order queued
+          if (previous != null) {
+            try {
+              previous.join();
+            } catch (InterruptedException e) {
+              return;
+            }
+          }
+          runSender();
+        }
+      };
+      sender.setDaemon(true);
+      sender.start();
+    }
+    notifyAll();
+  }
+
+  /**
+   * wait until all queued actions are processed by the device
+   *
+   * @param timeout max msec to wait
+   * @return false if the timeout was reached
+   */
+  public synchronized boolean flush(long timeout) {
+    long end = System.currentTimeMillis() + timeout;
+    while (pending > 0) {
+      long waitTime = end - System.currentTimeMillis();
+      if (waitTime <= 0) {
+        log(-1, "flush: timeout: %d actions pending", pending);
+        return false;
+      }
+      try {
+        wait(waitTime);
+      } catch (InterruptedException e) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * stop the sender thread - actions still queued are dropped
+   */
+  public synchronized void stop() {
+    pending -= queue.size();
+    queue.clear();
+    if (sender != null) {
+      stopped = sender;
+    }
+    sender = null;
+    notifyAll();
+  }
+
+  public synchronized boolean isIdle() {
+    return pending == 0;
+  }
+
+  private void runSender() {
+    Thread me = Thread.currentThread();
+    while (true) {
+      List<Action> batch = new ArrayList<>();
+      synchronized (this) {
+        while (sender == me && queue.isEmpty()) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            sender = null;
+            stopped = me;
+          }
+        }
+        if (sender != me) {
+          return;
+        }
+        while (!queue.isEmpty() && batch.size() < maxBatch) {
+          batch.add(queue.removeFirst());
+        }
+      }
+      StringBuilder commandLine = new StringBuilder();
+      for (Action action : batch) {
+        if (commandLine.length() > 0) {
+          commandLine.append(" ; ");
+        }
+        commandLine.append(action.command);
+      }
+      try {
+        InputStream stdout = shell.executeShell(commandLine.toString());
+        byte[] buffer = new byte[1024];
+        while (stdout.read(buffer) > -1) {
+        }
+        stdout.close();
+      } catch (IOException e) {
+        log(-1, "send: %s: %s", commandLine, e);
+      }
+      long done = System.nanoTime();
+      synchronized (this) {
+        countBatches++;
+        for (Action action : batch) {
+          latencyLast = done - action.queued;
+          latencySum += latencyLast;
+          latencyMax = Math.max(latencyMax, latencyLast);
+          countActions++;
+          log(lvl + 1, "%s: %.1f msec (batch of %d)", action.command, latencyLast / 1000000.0, batch.size());
+        }
+        pending -= batch.size();
+        if (pending < 0) {
+          pending = 0;
+        }
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * @return latency in msec of the last action processed
+   */
+  public synchronized double getLastLatency() {
+    return latencyLast / 1000000.0;
+  }
+
+  /**
+   * @return average latency in msec of the actions processed so far
+   */
+  public synchronized double getAverageLatency() {
+    return countActions == 0 ? 0 : latencySum / 1000000.0 / countActions;
+  }
+
+  public synchronized String getLatencyInfo() {
+    return String.format("actions: %d in %d batches latency(msec): avg %.1f max %.1f last %.1f",
+            countActions, countBatches, getAverageLatency(), latencyMax / 1000000.0, getLastLatency());
+  }
+
+  /**
+   * quote the text as one argument for the device's shell
+   *
+   * @param text the text
+   * @return the text in single quotes
+   */
+  public static String quote(String text) {
+    return "'" + text.replace("'", "'\\''") + "'";
+  }
+}
@@ -212,6 +212,9 @@ public class ADBRobot implements IRobot {
 
   @Override
   public void waitForIdle() {
+    if (device != null) {
+      device.inputFlush();
+    }
     try {
       new java.awt.Robot().waitForIdle();
     } catch (AWTException e) {
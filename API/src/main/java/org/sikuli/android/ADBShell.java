@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.android;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * the link to a device's shell as used by ADBDevice
+ * <p>
+ * the default implementation goes through the ADB server (see ADBClient.getShell()),<br>
+ * other implementations (e.g. a local fake device for testing) can be given to ADBDevice.init(ADBShell)
+ */
+public interface ADBShell {
+
+  /**
+   * @return the serial of the connected device
+   */
+  String getSerial();
+
+  /**
+   * run the command in the device's shell
+   *
+   * @param command the command (might contain pipes and other shell syntax)
+   * @param args    arguments appended blank separated
+   * @return the stdout of the command
+   * @throws IOException if the command could not be run
+   */
+  InputStream executeShell(String command, String... args) throws IOException;
+}
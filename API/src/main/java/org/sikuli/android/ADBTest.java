@@ -8,6 +8,12 @@ import org.sikuli.basics.Debug;
 import org.sikuli.script.*;
 import org.sikuli.script.Image;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Created by RaiMan on 12.07.16.
  * <p>
@@ -31,6 +37,11 @@ public class ADBTest {
 
   public static void main(String[] args) throws FindFailed {
 
+    if (args.length > 0 && "fake".equals(args[0])) {
+      inputChannelTest(50);
+      System.exit(0);
+    }
+
     ADBScreen aScr = startTest();
 
     if (aScr.isValid()) {
@@ -111,4 +122,66 @@ public class ADBTest {
     }
   }
 
+  /**
+   * a local fake device: answers getprop and dumpsys display,
+   * records all other commands and simulates the shell startup time per command
+   */
+  public static class FakeShell implements ADBShell {
+
+    private int shellStartup;
+    public List<String> commands = new ArrayList<>();
+
+    public FakeShell(int shellStartup) {
+      this.shellStartup = shellStartup;
+    }
+
+    @Override
+    public String getSerial() {
+      return "fake";
+    }
+
+    @Override
+    public InputStream executeShell(String command, String... args) throws IOException {
+      String out = "";
+      if (command.startsWith("getprop")) {
+        out = "[ro.build.version.release]: [7.0]\n";
+      } else if (command.startsWith("dumpsys")) {
+        out = "mDefaultViewport= ... deviceWidth=1200, deviceHeight=1920}\n";
+      } else {
+        RunTime.pause(shellStartup / 1000f);
+        synchronized (this) {
+          commands.add(command);
+        }
+      }
+      return new ByteArrayInputStream(out.getBytes("UTF-8"));
+    }
+  }
+
+  /**
+   * compares single shell commands per action with the batched input channel using a fake device
+   *
+   * @param actions number of taps to send
+   */
+  public static void inputChannelTest(int actions) {
+    ADBDevice.reset();
+    FakeShell fake = new FakeShell(150);
+    ADBDevice device = ADBDevice.init(fake);
+    boolean batched = ADBDevice.inputBatched;
+    for (boolean useBatch : new boolean[]{false, true}) {
+      ADBDevice.inputBatched = useBatch;
+      fake.commands.clear();
+      long start = System.currentTimeMillis();
+      for (int n = 0; n < actions; n++) {
+        device.tap(n, n);
+      }
+      device.inputFlush();
+      logp("inputChannelTest: batched(%s) %d taps: %d msec, %d shell commands", useBatch, actions,
+              System.currentTimeMillis() - start, fake.commands.size());
+      if (useBatch) {
+        logp("inputChannelTest: %s", device.getInputChannel().getLatencyInfo());
+      }
+    }
+    ADBDevice.inputBatched = batched;
+    ADBDevice.reset();
+  }
 }
@@ -26,7 +26,11 @@ import org.sikuli.util.JythonHelper;
  * You might redirect info, action, error and debug messages to your own logger object<br>
  * Start with setLogger() and then define with setLoggerXyz() the redirection targets
  *
- * This solution is NOT threadsafe !!!
+ * The output might be done asynchronously by a writer thread: setAsync(true) or -Dsikuli.LogAsync<br>
+ * the calling thread then only formats the message and queues it (no lock, see LogRing),
+ * use flush() to wait for the output (done at JVM exit anyway)
+ *
+ * The redirection setup (setLogger...) is NOT threadsafe !!!
  */
 public class Debug {
 
@@ -38,8 +42,19 @@ public class Debug {
   private String _title = null;
   private static PrintStream printout = null;
   private static PrintStream printoutuser = null;
-  private static final DateFormat df =
-          DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.MEDIUM);
+  private static final ThreadLocal<TimeFormat> timeFormat = new ThreadLocal<TimeFormat>() {
+    @Override
+    protected TimeFormat initialValue() {
+      return new TimeFormat();
+    }
+  };
+  private static final Object outputLock = new Object();
+  private static volatile LogRing logRing = null;
+  private static LogRing logRingInstance = null;
+  /**
+   * number of lines the async queue can hold (used when switched on the first time)
+   */
+  public static int logRingSize = 8192;
   public static String logfile;
 
 	private static Object privateLogger = null;
@@ -71,6 +86,64 @@ public class Debug {
 
 	private static PrintStream redirectedOut = null, redirectedErr = null;
 
+  /**
+   * receives the log lines and events produced by the thread, that has set the listener
+   * <br>not inherited by new threads (pool threads live longer than a run):
+   * work given to another thread takes it along (getListener/setListener, e.g. observers)
+   */
+  public interface Listener {
+    /**
+     * @param line a log line as printed
+     */
+    void log(String line);
+
+    /**
+     * @param type the kind of event (e.g. find, findfailed)
+     * @param values name-value pairs
+     */
+    void event(String type, Object... values);
+  }
+
+  private static final ThreadLocal<Listener> listener = new ThreadLocal<Listener>();
+
+  /**
+   * set the listener for the current thread
+   * @param aListener the listener - null removes the listener
+   */
+  public static void setListener(Listener aListener) {
+    if (aListener == null) {
+      listener.remove();
+    } else {
+      listener.set(aListener);
+    }
+  }
+
+  /**
+   * @return the listener of the current thread or null (to be given to a thread doing work for this one)
+   */
+  public static Listener getListener() {
+    return listener.get();
+  }
+
+  /**
+   * @return true if the current thread has a listener
+   */
+  public static boolean hasListener() {
+    return listener.get() != null;
+  }
+
+  /**
+   * give an event to the listener of the current thread if any
+   * @param type the kind of event
+   * @param values name-value pairs
+   */
+  public static void event(String type, Object... values) {
+    Listener aListener = listener.get();
+    if (aListener != null) {
+      aListener.event(type, values);
+    }
+  }
+
   static {
     String debug = System.getProperty("sikuli.Debug");
     if (debug != null && "".equals(debug)) {
@@ -89,6 +162,74 @@ public class Debug {
     }
     setLogFile(null);
     setUserLogFile(null);
+    if (System.getProperty("sikuli.LogAsync") != null) {
+      setAsync(!"false".equals(System.getProperty("sikuli.LogAsync")));
+    }
+  }
+
+  /**
+   * switch the asynchronous output on or off<br>
+   * on: the lines are queued and written by a writer thread<br>
+   * off (default): the lines are written by the calling thread (after queued lines are written)
+   *
+   * @param state true for on
+   */
+  public static synchronized void setAsync(boolean state) {
+    if (state) {
+      if (logRing == null) {
+        if (logRingInstance == null) {
+          logRingInstance = new LogRing(logRingSize);
+          Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+              flush();
+            }
+          });
+        }
+        logRing = logRingInstance;
+      }
+    } else if (logRing != null) {
+      logRing = null;
+      logRingInstance.flush(5000);
+    }
+  }
+
+  /**
+   * @return true if the output is done by the writer thread
+   */
+  public static boolean isAsync() {
+    return logRing != null;
+  }
+
+  /**
+   * wait until the queued lines are written (max 5 seconds) - does nothing if not async
+   */
+  public static void flush() {
+    LogRing ring = logRingInstance;
+    if (ring != null) {
+      ring.flush(5000);
+    }
+  }
+
+  /**
+   * the timestamp of the log lines (DateFormat is not threadsafe and the text only changes every second)
+   */
+  private static class TimeFormat {
+    final DateFormat df = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.MEDIUM);
+    long second = -1;
+    String text = "";
+
+    String format(long millis) {
+      if (millis / 1000 != second) {
+        second = millis / 1000;
+        text = df.format(new Date(millis));
+      }
+      return text;
+    }
+  }
+
+  private static String getTime() {
+    return timeFormat.get().format(System.currentTimeMillis());
   }
 
   public static void init() {
@@ -337,6 +478,7 @@ public class Debug {
       try {
         logfile = fileName;
         if (printout != null) {
+          flush();
           printout.close();
         }
         printout = new PrintStream(fileName);
@@ -381,6 +523,7 @@ public class Debug {
       }
       try {
         if (printoutuser != null) {
+          flush();
           printoutuser.close();
         }
         printoutuser = new PrintStream(fileName);
@@ -657,7 +800,7 @@ public class Debug {
       if (Settings.UserLogTime) {
 //TODO replace the hack -99 to filter user logs
         log(-99, String.format("%s (%s)",
-                Settings.UserLogPrefix, df.format(new Date())), message, args);
+                Settings.UserLogPrefix, getTime()), message, args);
       } else {
         log(-99, String.format("%s", Settings.UserLogPrefix), message, args);
       }
@@ -705,50 +848,68 @@ public class Debug {
     return out;
   }
 
-  private static synchronized String log(int level, String prefix, String message, Object... args) {
+  private static String log(int level, String prefix, String message, Object... args) {
 //TODO replace the hack -99 to filter user logs
-    String sout = "";
-    String stime = "";
-    if (level <= DEBUG_LEVEL) {
-      if (level == 3) {
-        if (message.startsWith("TRACE: ")) {
-          if (!Settings.TraceLogs) {
-            return "";
-          }
+    if (level > DEBUG_LEVEL) {
+      return "";
+    }
+    if (level == 3) {
+      if (message.startsWith("TRACE: ")) {
+        if (!Settings.TraceLogs) {
+          return "";
         }
       }
+    }
+    if (!prefix.isEmpty()) {
       if (Settings.LogTime && level != -99) {
-        stime = String.format(" (%s)", df.format(new Date()));
-      }
-			if (!prefix.isEmpty()) {
-        prefix = "[" + prefix + stime + "] ";
+        prefix = "[" + prefix + " (" + getTime() + ")] ";
+      } else {
+        prefix = "[" + prefix + "] ";
       }
-      sout = String.format(message, args);
-      boolean isRedirected = false;
-			if (level > -99) {
-				isRedirected = doRedirect(CallbackType.DEBUG, prefix, sout, null);
-			} else if (level == -99) {
-				isRedirected = doRedirect(CallbackType.USER, prefix, sout, null);
-			}
-      if (!isRedirected) {
-        if (level == -99 && printoutuser != null) {
-          printoutuser.print(prefix + sout);
-          printoutuser.println();
-        } else if (printout != null) {
-          printout.print(prefix + sout);
-          printout.println();
-        } else {
-          System.out.print(prefix + sout);
-          System.out.println();
-        }
-        if (level == -1 || level == -100 || level > 2) {
-          out(prefix + sout);
-        }
+    }
+    String sout = String.format(message, args);
+    Listener aListener = listener.get();
+    if (aListener != null) {
+      aListener.log(prefix + sout);
+    }
+    CallbackType type = level == -99 ? CallbackType.USER : CallbackType.DEBUG;
+    LogRing ring = logRing;
+    if (ring != null) {
+      ring.publish(level, type, prefix, sout);
+    } else {
+      synchronized (outputLock) {
+        write(level, type, prefix, sout);
       }
     }
     return prefix + sout;
   }
 
+  /**
+   * the output of a formatted line: redirect callback or logfile or System.out<br>
+   * done by the writer thread of LogRing if async
+   */
+  static void write(int level, CallbackType type, String prefix, String sout) {
+    boolean isRedirected = false;
+    if (level >= -99) {
+      isRedirected = doRedirect(type, prefix, sout, null);
+    }
+    if (!isRedirected) {
+      if (level == -99 && printoutuser != null) {
+        printoutuser.print(prefix + sout);
+        printoutuser.println();
+      } else if (printout != null) {
+        printout.print(prefix + sout);
+        printout.println();
+      } else {
+        System.out.print(prefix + sout);
+        System.out.println();
+      }
+      if (level == -1 || level == -100 || level > 2) {
+        out(prefix + sout);
+      }
+    }
+  }
+
   /**
    * Sikuli profiling messages<br> switch on/off: Settings.ProfileLogs, default off
    *
@@ -782,6 +943,7 @@ public class Debug {
 	/**
 	 * start timer
 	 * <br>log output depends on Settings.ProfileLogs
+	 * <br>for timing in hot paths use Profiler (no allocation, nothing done if off)
 	 * @return timer
 	 */
 	public static Debug startTimer() {
@@ -842,7 +1004,7 @@ public class Debug {
     if (!"".equals(_message)) {
       profile("TStart: " + _message, args);
     }
-    _beginTime = (new Date()).getTime();
+    _beginTime = System.nanoTime();
   }
 
   private long endTiming(String message, boolean isLap, Object... args) {
@@ -850,19 +1012,18 @@ public class Debug {
       profile("TError: timer not started (%s)", message);
       return -1;
     }
-    long t = (new Date()).getTime();
-    long dt = t - _beginTime;
+    long dt = (System.nanoTime() - _beginTime) / 1000000;
     if (!isLap) {
       _beginTime = 0;
     }
-    if (!"".equals(message)) {
+    if (Settings.ProfileLogs && !"".equals(message)) {
       profile(String.format((isLap ? "TLap:" : "TEnd") +
               " (%.3f sec): ", (float) dt / 1000) + message, args);
     }
     return dt;
   }
 
-	private static enum CallbackType {
+	static enum CallbackType {
 		INFO, ACTION, ERROR, DEBUG, USER;
 	}
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.basics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * INTERNAL USE: the asynchronous backend of Debug (Debug.setAsync())
+ * <p>
+ * a ring of preallocated slots for the already formatted log lines and one writer thread,
+ * that does the output (Debug.write: logfiles, System.out, redirect callbacks).<br>
+ * Logging threads only claim a slot (one atomic increment) and fill it - no lock.<br>
+ * If the ring is full, the logging thread waits for the writer (nothing is dropped).<br>
+ * The writer is a daemon thread and lives as long as the JVM.
+ */
+final class LogRing {
+
+  private final int capacity;
+  private final int mask;
+  private final int[] levels;
+  private final Debug.CallbackType[] types;
+  private final String[] prefixes;
+  private final String[] texts;
+  private final AtomicLongArray published;
+  private final AtomicLong claimed = new AtomicLong(0);
+  private volatile long consumed = 0;
+  private volatile boolean writerWaiting = false;
+  private final Thread writer;
+
+  /**
+   * @param size number of slots (rounded up to a power of 2)
+   */
+  LogRing(int size) {
+    int cap = 1;
+    while (cap < size) {
+      cap <<= 1;
+    }
+    capacity = cap;
+    mask = cap - 1;
+    levels = new int[cap];
+    types = new Debug.CallbackType[cap];
+    prefixes = new String[cap];
+    texts = new String[cap];
+    published = new AtomicLongArray(cap);
+    writer = new Thread("SikuliX-LogWriter") {
+      @Override
+      public void run() {
+        drain();
+      }
+    };
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * queue a formatted log line for the writer
+   *
+   * @param level  the log level
+   * @param type   the redirect type
+   * @param prefix the complete prefix
+   * @param text   the formatted message
+   */
+  void publish(int level, Debug.CallbackType type, String prefix, String text) {
+    if (Thread.currentThread() == writer) {
+      // e.g. a failing redirect callback logs an error: the writer must not wait for itself
+      Debug.write(level, type, prefix, text);
+      return;
+    }
+    long seq = claimed.getAndIncrement();
+    while (seq - consumed >= capacity) {
+      wakeWriter();
+      LockSupport.parkNanos(50000);
+    }
+    int slot = (int) seq & mask;
+    levels[slot] = level;
+    types[slot] = type;
+    prefixes[slot] = prefix;
+    texts[slot] = text;
+    published.lazySet(slot, seq + 1);
+    if (writerWaiting) {
+      wakeWriter();
+    }
+  }
+
+  private void wakeWriter() {
+    LockSupport.unpark(writer);
+  }
+
+  private void drain() {
+    while (true) {
+      long seq = consumed;
+      int slot = (int) seq & mask;
+      if (published.get(slot) != seq + 1) {
+        writerWaiting = true;
+        if (published.get(slot) != seq + 1) {
+          LockSupport.parkNanos(this, 1000000);
+        }
+        writerWaiting = false;
+        continue;
+      }
+      int level = levels[slot];
+      Debug.CallbackType type = types[slot];
+      String prefix = prefixes[slot];
+      String text = texts[slot];
+      types[slot] = null;
+      prefixes[slot] = null;
+      texts[slot] = null;
+      try {
+        Debug.write(level, type, prefix, text);
+      } catch (Exception ex) {
+        System.out.println("[error] Debug: LogWriter: " + ex);
+      }
+      consumed = seq + 1;
+    }
+  }
+
+  /**
+   * wait until all lines queued so far are written
+   *
+   * @param timeout max msec to wait
+   * @return true if all written, false if timed out
+   */
+  boolean flush(long timeout) {
+    if (Thread.currentThread() == writer) {
+      return true;
+    }
+    long target = claimed.get();
+    long until = System.currentTimeMillis() + timeout;
+    while (consumed < target) {
+      if (System.currentTimeMillis() > until || !writer.isAlive()) {
+        return false;
+      }
+      wakeWriter();
+      LockSupport.parkNanos(100000);
+    }
+    return true;
+  }
+
+  /**
+   * @return number of lines queued but not yet written
+   */
+  long pending() {
+    return claimed.get() - consumed;
+  }
+}
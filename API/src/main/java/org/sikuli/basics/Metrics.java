@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.basics;
+
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * counters of the find pipeline per screen type (Screen, VNCScreen, ADBScreen, ...) and image name
+ * <p>
+ * off by default (switched on by Metrics.on(), the RunServer does it at start)<br>
+ * available as JMX MBean org.sikuli:type=Metrics and as text in the Prometheus format (toPrometheus(),
+ * RunServer HTTP mode: GET /METRICS)
+ */
+public class Metrics {
+
+  private static void log(int level, String message, Object... args) {
+    Debug.logx(level, "Metrics: " + message, args);
+  }
+
+  /**
+   * what is counted - timed: the nanoseconds are summed too
+   */
+  public enum Counter {
+    CAPTURES("captures", "screen captures for a find", true),
+    MAT_CONVERSIONS("mat_conversions", "images converted to OpenCV Mats", false),
+    LASTSEEN_HITS("lastseen_hits", "found at the last seen position", false),
+    LASTSEEN_MISSES("lastseen_misses", "not found at the last seen position", false),
+    DOWNSAMPLE_HITS("downsample_hits", "found in the downsampled image", false),
+    DOWNSAMPLE_MISSES("downsample_misses", "not found in the downsampled image", false),
+    MATCHES("matches", "successful find operations", true),
+    WAIT_RETRIES("wait_retries", "repeated searches while waiting", false),
+    FINDFAILED("findfailed", "FindFailed outcomes of find, wait, findAll", false),
+    OCR_CACHE_HITS("ocr_cache_hits", "OCR results taken from the cache", false),
+    OCR_CACHE_MISSES("ocr_cache_misses", "OCR results not in the cache", false),
+    APP_WINDOWS("app_windows", "app windows waited for after a launch (time: launch to window)", true),
+    TYPED_CHARS("typed_chars", "characters typed or pasted by type (time: typing - chars/sec = count / time)", true);
+
+    final String name;
+    final String help;
+    final boolean timed;
+
+    Counter(String name, String help, boolean timed) {
+      this.name = name;
+      this.help = help;
+      this.timed = timed;
+    }
+  }
+
+  private static volatile boolean enabled = false;
+  private static boolean registered = false;
+
+  private static final ConcurrentHashMap<String, Series> series = new ConcurrentHashMap<>();
+
+  private Metrics() {
+  }
+
+  /**
+   * start counting (and register the MBean)
+   */
+  public static synchronized void on() {
+    enabled = true;
+    if (!registered) {
+      registered = true;
+      try {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(
+                new StandardMBean(new MBean(), MetricsMXBean.class, true),
+                new ObjectName("org.sikuli:type=Metrics"));
+      } catch (Exception ex) {
+        log(-1, "JMX registration not possible: %s", ex);
+      }
+    }
+  }
+
+  /**
+   * stop counting (the counters are kept)
+   */
+  public static void off() {
+    enabled = false;
+  }
+
+  /**
+   * @return true if counting
+   */
+  public static boolean isOn() {
+    return enabled;
+  }
+
+  /**
+   * count 1
+   *
+   * @param counter what
+   * @param screen  screen type (e.g. Screen) or empty
+   * @param image   image name or empty
+   */
+  public static void count(Counter counter, String screen, String image) {
+    add(counter, screen, image, 1, 0);
+  }
+
+  /**
+   * count 1 with the time it took
+   *
+   * @param counter what
+   * @param screen  screen type (e.g. Screen) or empty
+   * @param image   image name or empty
+   * @param nanos   the duration
+   */
+  public static void time(Counter counter, String screen, String image, long nanos) {
+    add(counter, screen, image, 1, nanos);
+  }
+
+  /**
+   * @param counter what
+   * @param screen  screen type (e.g. Screen) or empty
+   * @param image   image name or empty
+   * @param count   how many
+   * @param nanos   the duration (0 if not timed)
+   */
+  public static void add(Counter counter, String screen, String image, long count, long nanos) {
+    if (!enabled) {
+      return;
+    }
+    screen = screen == null ? "" : screen;
+    image = image == null ? "" : image;
+    String key = counter.ordinal() + "\t" + screen + "\t" + image;
+    Series aSeries = series.get(key);
+    if (aSeries == null) {
+      Series newSeries = new Series(counter, screen, image);
+      aSeries = series.putIfAbsent(key, newSeries);
+      if (aSeries == null) {
+        aSeries = newSeries;
+      }
+    }
+    aSeries.count.addAndGet(count);
+    if (nanos > 0) {
+      aSeries.nanos.addAndGet(nanos);
+    }
+  }
+
+  /**
+   * @param screen a screen object (IScreen)
+   * @return the simple class name (Screen, VNCScreen, ADBScreen, ...) - empty if null
+   */
+  public static String screenType(Object screen) {
+    return screen == null ? "" : screen.getClass().getSimpleName();
+  }
+
+  /**
+   * reset all counters
+   */
+  public static void reset() {
+    series.clear();
+  }
+
+  /**
+   * @return counter name - total over all screens and images
+   */
+  public static Map<String, Long> getTotals() {
+    Map<String, Long> totals = new TreeMap<>();
+    for (Series aSeries : series.values()) {
+      Long total = totals.get(aSeries.counter.name);
+      totals.put(aSeries.counter.name, (total == null ? 0 : total) + aSeries.count.get());
+    }
+    return totals;
+  }
+
+  /**
+   * @return all counters in the Prometheus text format (version 0.0.4)
+   */
+  public static String toPrometheus() {
+    List<Series> all = new ArrayList<>(series.values());
+    Collections.sort(all, new Comparator<Series>() {
+      @Override
+      public int compare(Series s1, Series s2) {
+        int result = s1.counter.compareTo(s2.counter);
+        if (result == 0) {
+          result = s1.screen.compareTo(s2.screen);
+        }
+        if (result == 0) {
+          result = s1.image.compareTo(s2.image);
+        }
+        return result;
+      }
+    });
+    StringBuilder text = new StringBuilder();
+    for (Counter counter : Counter.values()) {
+      String name = "sikulix_" + counter.name + "_total";
+      text.append("# HELP ").append(name).append(" ").append(counter.help).append("\n");
+      text.append("# TYPE ").append(name).append(" counter\n");
+      for (Series aSeries : all) {
+        if (aSeries.counter == counter) {
+          text.append(name).append(aSeries.labels()).append(" ").append(aSeries.count.get()).append("\n");
+        }
+      }
+      if (counter.timed) {
+        name = "sikulix_" + counter.name + "_seconds_total";
+        text.append("# HELP ").append(name).append(" time spent: ").append(counter.help).append("\n");
+        text.append("# TYPE ").append(name).append(" counter\n");
+        for (Series aSeries : all) {
+          if (aSeries.counter == counter) {
+            text.append(name).append(aSeries.labels()).append(" ")
+                    .append(String.format(Locale.US, "%.6f", aSeries.nanos.get() / 1e9)).append("\n");
+          }
+        }
+      }
+    }
+    return text.toString();
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static class Series {
+    final Counter counter;
+    final String screen;
+    final String image;
+    final AtomicLong count = new AtomicLong();
+    final AtomicLong nanos = new AtomicLong();
+
+    Series(Counter counter, String screen, String image) {
+      this.counter = counter;
+      this.screen = screen;
+      this.image = image;
+    }
+
+    String labels() {
+      return "{screen=\"" + escape(screen) + "\",image=\"" + escape(image) + "\"}";
+    }
+  }
+
+  /**
+   * the JMX view of the metrics
+   */
+  public interface MetricsMXBean {
+    Map<String, Long> getTotals();
+
+    String getPrometheusText();
+
+    boolean isOn();
+
+    void setOn(boolean on);
+
+    void reset();
+  }
+
+  private static class MBean implements MetricsMXBean {
+    @Override
+    public Map<String, Long> getTotals() {
+      return Metrics.getTotals();
+    }
+
+    @Override
+    public String getPrometheusText() {
+      return Metrics.toPrometheus();
+    }
+
+    @Override
+    public boolean isOn() {
+      return Metrics.isOn();
+    }
+
+    @Override
+    public void setOn(boolean on) {
+      if (on) {
+        Metrics.on();
+      } else {
+        Metrics.off();
+      }
+    }
+
+    @Override
+    public void reset() {
+      Metrics.reset();
+    }
+  }
+}
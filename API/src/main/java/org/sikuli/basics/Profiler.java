@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.basics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * named timers for the hot paths (capture, Mat conversion, find, ...)
+ * <p>
+ * usage: a timer is registered once (static field) and used like this:<br>
+ * <pre>
+ * private static final Profiler.Timer tFind = Profiler.timer("Region.doFind");
+ * ...
+ * long start = Profiler.start();
+ * ... timed code ...
+ * tFind.stop(start);
+ * </pre>
+ * If profiling is off (default), start() returns 0 and stop() does nothing - no allocation, no clock.<br>
+ * Switched on by Settings.FindProfiling or Profiler.on()<br>
+ * Each timer counts into fixed buckets (8 per power of 2 of nanoseconds, max error about 6%),
+ * so percentiles are available at any time with snapshot() - a summary with summary() or logSummary()
+ */
+public class Profiler {
+
+  private static boolean enabled = false;
+
+  private static final ConcurrentSkipListMap<String, Timer> timers = new ConcurrentSkipListMap<>();
+
+  private Profiler() {
+  }
+
+  /**
+   * switch on profiling (independent of Settings.FindProfiling)
+   */
+  public static void on() {
+    enabled = true;
+  }
+
+  /**
+   * switch off profiling (Settings.FindProfiling is not changed)
+   */
+  public static void off() {
+    enabled = false;
+  }
+
+  /**
+   * @return true if timing is done
+   */
+  public static boolean isOn() {
+    return enabled || Settings.FindProfiling;
+  }
+
+  /**
+   * get a timer - registered with the first call
+   *
+   * @param name unique name (e.g. Class.method)
+   * @return the timer
+   */
+  public static Timer timer(String name) {
+    Timer timer = timers.get(name);
+    if (timer == null) {
+      Timer newTimer = new Timer(name);
+      timer = timers.putIfAbsent(name, newTimer);
+      if (timer == null) {
+        timer = newTimer;
+      }
+    }
+    return timer;
+  }
+
+  /**
+   * @return the start time for Timer.stop() or 0 if profiling is off
+   */
+  public static long start() {
+    if (!isOn()) {
+      return 0;
+    }
+    return System.nanoTime();
+  }
+
+  /**
+   * @return snapshots of all timers used so far (sorted by name)
+   */
+  public static List<Snapshot> snapshots() {
+    List<Snapshot> snapshots = new ArrayList<>();
+    for (Timer timer : timers.values()) {
+      Snapshot snapshot = timer.snapshot();
+      if (snapshot.count > 0) {
+        snapshots.add(snapshot);
+      }
+    }
+    return snapshots;
+  }
+
+  /**
+   * reset all timers
+   */
+  public static void reset() {
+    for (Timer timer : timers.values()) {
+      timer.reset();
+    }
+  }
+
+  /**
+   * @return one line per timer used so far
+   */
+  public static String summary() {
+    StringBuilder summary = new StringBuilder();
+    for (Snapshot snapshot : snapshots()) {
+      summary.append(snapshot).append("\n");
+    }
+    return summary.toString();
+  }
+
+  /**
+   * print the summary ([FindProfiling]) if anything was timed
+   */
+  public static void logSummary() {
+    List<Snapshot> snapshots = snapshots();
+    if (snapshots.isEmpty()) {
+      return;
+    }
+    Debug.logp("[FindProfiling] summary (msec)");
+    for (Snapshot snapshot : snapshots) {
+      Debug.logp("[FindProfiling] %s", snapshot);
+    }
+  }
+
+  /**
+   * a named timer with a histogram of the durations
+   */
+  public static class Timer {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    private Timer(String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * record the time since start
+     *
+     * @param start the value from Profiler.start() - 0 does nothing
+     * @return the duration in nanoseconds (0 if not timed)
+     */
+    public long stop(long start) {
+      if (start == 0) {
+        return 0;
+      }
+      long nanos = System.nanoTime() - start;
+      record(nanos);
+      return nanos;
+    }
+
+    /**
+     * record a duration measured elsewhere
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+      if (nanos < 0) {
+        nanos = 0;
+      }
+      buckets.incrementAndGet(bucket(nanos));
+      count.incrementAndGet();
+      sum.addAndGet(nanos);
+      long current;
+      while (nanos > (current = max.get())) {
+        if (max.compareAndSet(current, nanos)) {
+          break;
+        }
+      }
+    }
+
+    private static int bucket(long nanos) {
+      if (nanos < SUB_COUNT) {
+        return (int) nanos;
+      }
+      int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+      int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+      return ((exponent - SUB_BITS + 1) << SUB_BITS) + sub;
+    }
+
+    private static long bucketValue(int index) {
+      if (index < SUB_COUNT) {
+        return index;
+      }
+      int exponent = (index >> SUB_BITS) + SUB_BITS - 1;
+      long sub = index & (SUB_COUNT - 1);
+      long low = (SUB_COUNT + sub) << (exponent - SUB_BITS);
+      return low + (1L << (exponent - SUB_BITS)) / 2;
+    }
+
+    void reset() {
+      for (int n = 0; n < buckets.length(); n++) {
+        buckets.set(n, 0);
+      }
+      count.set(0);
+      sum.set(0);
+      max.set(0);
+    }
+
+    /**
+     * @return count, mean, percentiles and max (not atomic with concurrent recording)
+     */
+    public Snapshot snapshot() {
+      long[] counts = new long[buckets.length()];
+      long total = 0;
+      for (int n = 0; n < counts.length; n++) {
+        counts[n] = buckets.get(n);
+        total += counts[n];
+      }
+      Snapshot snapshot = new Snapshot(name, total, total == 0 ? 0 : sum.get() / total, max.get());
+      snapshot.p50 = percentile(counts, total, 0.50);
+      snapshot.p90 = percentile(counts, total, 0.90);
+      snapshot.p99 = percentile(counts, total, 0.99);
+      return snapshot;
+    }
+
+    private static long percentile(long[] counts, long total, double fraction) {
+      if (total == 0) {
+        return 0;
+      }
+      long rank = (long) Math.ceil(total * fraction);
+      long seen = 0;
+      for (int n = 0; n < counts.length; n++) {
+        seen += counts[n];
+        if (seen >= rank) {
+          return bucketValue(n);
+        }
+      }
+      return 0;
+    }
+  }
+
+  /**
+   * the state of a timer (times in nanoseconds)
+   */
+  public static class Snapshot {
+    public final String name;
+    public final long count;
+    public final long mean;
+    public final long max;
+    public long p50;
+    public long p90;
+    public long p99;
+
+    Snapshot(String name, long count, long mean, long max) {
+      this.name = name;
+      this.count = count;
+      this.mean = mean;
+      this.max = max;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: %d x mean %.3f p50 %.3f p90 %.3f p99 %.3f max %.3f",
+              name, count, mean / 1e6, p50 / 1e6, p90 / 1e6, p99 / 1e6, max / 1e6);
+    }
+  }
+}
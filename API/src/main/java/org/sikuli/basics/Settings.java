@@ -22,6 +22,9 @@ public class Settings {
     private static String me = "Settings: ";
     private static int lvl = 3;
     public static boolean noPupUps = false;
+    /**
+     * switches on the Profiler timers, a summary is printed at exit ([FindProfiling])
+     */
     public static boolean FindProfiling = false;
 
     public static boolean InputFontMono = false;
@@ -341,6 +344,22 @@ public class Settings {
      * to 1.0 (max delay of 1 second)
      */
     public static double TypeDelay = 0.0;
+    /**
+     * Region.type on the desktop (RobotDesktop) without TypeDelay: true - the key codes of the whole text
+     * are computed first and the keys are sent in one batch (no pause per key, waitForIdle only at the start
+     * and at the end), false - one character after another (20 msec pause, 10 msec per key event)
+     */
+    public static boolean TypeBatch = false;
+    /**
+     * with TypeBatch: characters per second (0: as fast as possible)
+     */
+    public static int TypeRate = 0;
+    /**
+     * Region.type: texts with at least this many characters are pasted via the clipboard instead
+     * (only on the local screens, without modifiers and if the text has no Key constants, tabs or newlines
+     * - 0: never)
+     */
+    public static int TypePasteLength = 0;
     /**
      * Specify a delay between the mouse down and up in seconds as 0.nnn. This
      * only applies to the next click action and is then reset to 0 again. A value
@@ -350,11 +369,41 @@ public class Settings {
     public static boolean ClickFast = false;
     public static boolean RobotFake = true;
 
+    /**
+     * the screen capture of RobotDesktop.captureScreen: "awt" (java.awt.Robot, the default),
+     * "xshm" (Linux: MIT-SHM and XDamage, org.sikuli.x11.XShmCapture), "auto" (xshm if possible, else awt)
+     * or the class name of an ICaptureProvider
+     */
+    public static String CaptureProvider = "awt";
+
+    /**
+     * Jython scripts are compiled only once: the compiled code is kept in memory
+     * and in the SikulixStore (org.sikuli.util.JythonCodeCache)
+     */
+    public static boolean ScriptCodeCache = true;
+
     public static String BundlePath = null;
     public static boolean OcrTextSearch = false;
     public static boolean OcrTextRead = false;
     public static String OcrLanguage = "eng";
 
+    /**
+     * max number of OCR results kept for unchanged images (text, word, listText), 0 = no caching (default: 100)
+     */
+    public static int OcrCacheSize = 100;
+
+    /**
+     * true: text search (findText, findAllText) only reads the areas, that probably contain text
+     * (TextDetector) - much faster on large regions, but text might be missed (default: false)
+     */
+    public static boolean OcrTextDetection = false;
+
+    /**
+     * true: Region.text() in an observed region (onChange) only reads the lines again,
+     * that were changed since the last text() (default: false)
+     */
+    public static boolean OcrTextIncremental = false;
+
     /**
      * true = start slow motion mode, false: stop it (default: false) show a
      * visual for SlowMotionDelay seconds (default: 2)
@@ -380,6 +429,16 @@ public class Settings {
 
     public static float SlowMotionDelay = 2.0f; // in seconds
     public static float MoveMouseDelay = 0.5f; // in seconds
+    /**
+     * smoothMove (RobotDesktop): mouse moves per second while moving in MoveMouseDelay
+     * (0: as many as possible - keeps a core busy)
+     */
+    public static int MoveMouseRate = 120;
+    /**
+     * smoothMove (RobotDesktop): true - returns at once and the mouse moves in the background
+     * (e.g. while the next find captures), the next mouse or key action waits until the move has ended
+     */
+    public static boolean MoveMouseAsync = false;
     private static float MoveMouseDelaySaved = MoveMouseDelay;
 
     /**
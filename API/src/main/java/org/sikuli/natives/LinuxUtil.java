@@ -12,6 +12,7 @@ import org.sikuli.script.App;
 
 import java.awt.*;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -70,7 +71,14 @@ public class LinuxUtil implements OSUtil {
 
     @Override
     public int isRunning(App.AppEntry app) {
-        return -1;
+        if (app.pid > 0) {
+            // no process is started for the check: the process exists as long as /proc/<pid> exists
+            return new File("/proc/" + app.pid).exists() ? 1 : 0;
+        }
+        if (app.name.isEmpty()) {
+            return -1;
+        }
+        return getWindow(app.name, 0) != null ? 1 : 0;
     }
 
     @Override
@@ -160,8 +168,22 @@ public class LinuxUtil implements OSUtil {
         return null;
     }
 
+    @Override
+    public boolean waitForWindowChange(long msec) {
+        try {
+            return LinuxWindowTable.get().awaitChange(msec);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
     @Override
     public Rectangle getFocusedWindow() {
+        long active = LinuxWindowTable.get().getActiveWindow();
+        if (active > 0) {
+            return findRegion(String.format("0x%08x", active), 0, SearchType.WINDOW_ID);
+        }
         if (!isAvailable(xdoToolAvail, "getFocusedWindow", "xdoTool")) {
             return null;
         }
@@ -201,7 +223,7 @@ public class LinuxUtil implements OSUtil {
         String[] found = {};
         int numFound = 0;
         try {
-            CommandExecutorResult result = CommandExecutorHelper.execute("wmctrl -lpGx", 0);
+            List<String[]> windows = LinuxWindowTable.get().getWindows();
 
             int slash = appName.lastIndexOf("/");
             if (slash >= 0) {
@@ -212,14 +234,12 @@ public class LinuxUtil implements OSUtil {
             if (type == SearchType.APP_NAME) {
                 appName = appName.toLowerCase();
             }
-            String[] lines = result.getStandardOutput().split("\\n");
-            for (String str : lines) {
-                //Debug.log("read: " + str);
-                String winLine[] = str.split("\\s+");
+            long windowId = type == SearchType.WINDOW_ID ? LinuxWindowTable.parseId(appName) : -1;
+            for (String winLine[] : windows) {
                 boolean ok = false;
 
                 if (type == SearchType.WINDOW_ID) {
-                    if (appName.equals(winLine[0])) {
+                    if (windowId >= 0 && windowId == LinuxWindowTable.parseId(winLine[0])) {
                         ok = true;
                     }
                 } else if (type == SearchType.PID) {
@@ -227,12 +247,11 @@ public class LinuxUtil implements OSUtil {
                         ok = true;
                     }
                 } else if (type == SearchType.APP_NAME) {
-                    String winLineName = winLine[9].toLowerCase();
-                    if (appName.equals(winLineName)) {
+                    if (winLine.length > 9 && appName.equals(winLine[9].toLowerCase())) {
                         ok = true;
                     }
 
-                    if (!ok && winLine[7].toLowerCase().contains(appName)) {
+                    if (!ok && winLine.length > 7 && winLine[7].toLowerCase().contains(appName)) {
                         ok = true;
                     }
                 }
@@ -253,6 +272,30 @@ public class LinuxUtil implements OSUtil {
         return found;
     }
 
+    /**
+     * the X window id of a window (e.g. for a WindowScreen)
+     *
+     * @param pid    process id of the app
+     * @param winNum which window of the app (0: first)
+     * @return the window id or -1 if not found
+     */
+    public long getWindowId(int pid, int winNum) {
+        String[] winLine = findWindow("" + pid, winNum, SearchType.PID);
+        return winLine == null || winLine.length < 1 ? -1 : LinuxWindowTable.parseId(winLine[0]);
+    }
+
+    /**
+     * the X window id of a window (e.g. for a WindowScreen)
+     *
+     * @param appName as for getWindow(appName, winNum)
+     * @param winNum  which window of the app (0: first)
+     * @return the window id or -1 if not found
+     */
+    public long getWindowId(String appName, int winNum) {
+        String[] winLine = findWindow(appName, winNum, SearchType.APP_NAME);
+        return winLine == null || winLine.length < 1 ? -1 : LinuxWindowTable.parseId(winLine[0]);
+    }
+
     /**
      * Returns a PID of the givenAppname and the winNumber
      *
@@ -296,6 +339,7 @@ public class LinuxUtil implements OSUtil {
         try {
             Process p = Runtime.getRuntime().exec(cmd);
             p.waitFor();
+            LinuxWindowTable.get().invalidate();
             return p.exitValue();
         } catch (Exception e) {
             System.out.println("[error] closeApp:\n" + e.getMessage());
@@ -316,6 +360,7 @@ public class LinuxUtil implements OSUtil {
         try {
             // execute wmctrl with hex, e.g. 'wmctrl -ia 0x00000'
             CommandExecutorHelper.execute("wmctrl -ia " + winLine[0], 0);
+            LinuxWindowTable.get().invalidate();
             //on the success exit value = 0 -> so no exception will be thrown
             return pid;
         } catch (Exception e) {
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.natives;
+
+import org.sikuli.basics.Debug;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * INTERNAL USE: the window list of the X server (wmctrl -lpGx) kept in memory for LinuxUtil
+ * <p>
+ * one long running helper process (xprop -root -spy) reports the changes of the window list
+ * (_NET_CLIENT_LIST) and the active window (_NET_ACTIVE_WINDOW).<br>
+ * The list is read again (one wmctrl) only after such a change or when it is older than MaxAge
+ * (window moves, resizes and title changes are not reported by the root window),
+ * so polling App.window() or App.focus() does not start a process per call.<br>
+ * waiting for a window (App.waitForWindow) is woken up by the change of the window list (awaitChange).<br>
+ * Without xprop the list is read at most every MaxAge msec.
+ */
+class LinuxWindowTable {
+
+  private static String me = "LinuxWindowTable: ";
+  private static int lvl = 3;
+
+  private static void log(int level, String message, Object... args) {
+    Debug.logx(level, me + message, args);
+  }
+
+  /**
+   * max age of the window list in msec (0: read for every query)
+   */
+  static long MaxAge = 250;
+
+  private static LinuxWindowTable table = null;
+
+  private volatile List<String[]> windows = new ArrayList<String[]>();
+  private volatile long refreshed = 0;
+  private volatile boolean changed = true;
+  private volatile long activeWindow = -1;
+  private volatile boolean spying = false;
+  private Process spy = null;
+  private final Object changes = new Object();
+  private long changeCount = 0;
+
+  private LinuxWindowTable() {
+    startSpy();
+  }
+
+  static synchronized LinuxWindowTable get() {
+    if (table == null) {
+      table = new LinuxWindowTable();
+    }
+    return table;
+  }
+
+  /**
+   * @return the lines of wmctrl -lpGx split into columns:
+   * 0 id, 1 desktop, 2 pid, 3 x, 4 y, 5 w, 6 h, 7 class, 8 host, 9... title
+   * @throws Exception if wmctrl fails
+   */
+  List<String[]> getWindows() throws Exception {
+    if (changed || System.currentTimeMillis() - refreshed > MaxAge) {
+      refresh();
+    }
+    return windows;
+  }
+
+  /**
+   * the next query reads the window list again (e.g. after an action on a window)
+   */
+  void invalidate() {
+    changed = true;
+  }
+
+  /**
+   * waits until the X server reports a change of the window list (a window mapped or unmapped)
+   *
+   * @param msec max time to wait
+   * @return true if a change was reported, false if the time elapsed (or no xprop: just slept)
+   * @throws InterruptedException if interrupted while waiting
+   */
+  boolean awaitChange(long msec) throws InterruptedException {
+    if (msec <= 0) {
+      return false;
+    }
+    if (!spying) {
+      Thread.sleep(msec);
+      return false;
+    }
+    long end = System.currentTimeMillis() + msec;
+    synchronized (changes) {
+      long seen = changeCount;
+      while (changeCount == seen) {
+        long left = end - System.currentTimeMillis();
+        if (left <= 0) {
+          return false;
+        }
+        changes.wait(left);
+      }
+    }
+    return true;
+  }
+
+  private void signalChange() {
+    changed = true;
+    synchronized (changes) {
+      changeCount++;
+      changes.notifyAll();
+    }
+  }
+
+  /**
+   * @return the id of the active window as reported by the X server or -1 if not known
+   */
+  long getActiveWindow() {
+    return spying ? activeWindow : -1;
+  }
+
+  /**
+   * @param id window id as hex string (0x...)
+   * @return the id as number (-1 if not valid)
+   */
+  static long parseId(String id) {
+    try {
+      return Long.parseLong(id.trim().replaceFirst("^0[xX]", ""), 16);
+    } catch (Exception ex) {
+      return -1;
+    }
+  }
+
+  private synchronized void refresh() throws Exception {
+    if (!changed && System.currentTimeMillis() - refreshed <= MaxAge) {
+      // refreshed by another thread meanwhile
+      return;
+    }
+    changed = false;
+    long start = System.currentTimeMillis();
+    CommandExecutorResult result = CommandExecutorHelper.execute("wmctrl -lpGx", 0);
+    List<String[]> newWindows = new ArrayList<String[]>();
+    String output = result.getStandardOutput();
+    if (output != null) {
+      for (String line : output.split("\\n")) {
+        String[] columns = line.trim().split("\\s+");
+        if (columns.length >= 7) {
+          newWindows.add(columns);
+        }
+      }
+    }
+    windows = Collections.unmodifiableList(newWindows);
+    refreshed = System.currentTimeMillis();
+    log(lvl + 1, "refresh: %d windows (%d msec)", newWindows.size(), refreshed - start);
+  }
+
+  private void startSpy() {
+    try {
+      spy = new ProcessBuilder("xprop", "-root", "-spy", "_NET_CLIENT_LIST", "_NET_ACTIVE_WINDOW")
+              .redirectErrorStream(true).start();
+    } catch (Exception ex) {
+      log(lvl, "xprop not available (%s): window list read at most every %d msec", ex.getMessage(), MaxAge);
+      return;
+    }
+    spying = true;
+    Thread reader = new Thread("SikuliX-WindowSpy") {
+      @Override
+      public void run() {
+        try {
+          BufferedReader in = new BufferedReader(new InputStreamReader(spy.getInputStream()));
+          String line;
+          while ((line = in.readLine()) != null) {
+            if (line.startsWith("_NET_CLIENT_LIST")) {
+              signalChange();
+            } else if (line.startsWith("_NET_ACTIVE_WINDOW")) {
+              int hash = line.lastIndexOf("#");
+              activeWindow = hash < 0 ? -1 : parseId(line.substring(hash + 1).split(",")[0]);
+            }
+          }
+        } catch (Exception ex) {
+          log(-1, "xprop: %s", ex.getMessage());
+        }
+        spying = false;
+        signalChange();
+        log(lvl, "xprop ended: window list read at most every %d msec", MaxAge);
+      }
+    };
+    reader.setDaemon(true);
+    reader.start();
+    Runtime.getRuntime().addShutdownHook(new Thread() {
+      @Override
+      public void run() {
+        spy.destroy();
+      }
+    });
+  }
+}
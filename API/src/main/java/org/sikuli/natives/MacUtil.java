@@ -286,6 +286,17 @@ public class MacUtil implements OSUtil {
     return rect;
   }
 
+  @Override
+  public boolean waitForWindowChange(long msec) {
+    // window changes are not reported here: the caller checks again after msec
+    try {
+      Thread.sleep(Math.max(0, msec));
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    return false;
+  }
+
   @Override
   public Rectangle getFocusedWindow() {
     checkAxEnabled("getFocusedWindow");
@@ -57,5 +57,14 @@ public interface OSUtil {
 
   public Rectangle getFocusedWindow();
 
+  /**
+   * wait until the system reports a change of the window list or the time elapses
+   * (used by App.waitForWindow and App.isRunning between two checks)
+   *
+   * @param msec max time to wait
+   * @return true if a change was reported (false: the time elapsed or changes are not reported on this system)
+   */
+  public boolean waitForWindowChange(long msec);
+
   public void bringWindowToFront(Window win, boolean ignoreMouse);
 }
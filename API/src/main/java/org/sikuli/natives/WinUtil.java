@@ -313,6 +313,17 @@ public class WinUtil implements OSUtil {
     return _getWindow(hwnd, winNum);
   }
 
+  @Override
+  public boolean waitForWindowChange(long msec) {
+    // window changes are not reported here: the caller checks again after msec
+    try {
+      Thread.sleep(Math.max(0, msec));
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    return false;
+  }
+
   @Override
   public Rectangle getFocusedWindow() {
     Rectangle rect = getFocusedRegion();
@@ -4,6 +4,7 @@
 package org.sikuli.script;
 
 import org.sikuli.basics.Debug;
+import org.sikuli.basics.Metrics;
 import org.sikuli.natives.OSUtil;
 import org.sikuli.natives.SysUtil;
 
@@ -13,7 +14,6 @@ import java.io.*;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 //import org.apache.http.HttpEntity;
@@ -45,6 +45,14 @@ public class App {
   private int appPID;
   private boolean isImmediate = false;
   private boolean notFound = false;
+  private long launched = 0;
+  private long launchToWindow = -1;
+
+  /**
+   * max time in msec between two checks while waiting for an app or its window
+   * (on Linux a new window ends the wait earlier)
+   */
+  public static int WaitInterval = 250;
   private static final Map<Type, String> appsWindows;
   private static final Map<Type, String> appsMac;
   private static final Region aRegion = new Region();
@@ -239,15 +247,40 @@ public class App {
     return waitForWindow(5);
   }
 
+  /**
+   * waits until the app has a window - returns as soon as it is there
+   * (after an open: the time from the launch is available with getLaunchToWindow())
+   *
+   * @param seconds max time to wait
+   * @return the window or null if not there after the time
+   */
   public Region waitForWindow(int seconds) {
-    Region win = null;
-    while ((win = window()) == null && seconds > 0) {
-      aRegion.wait(0.5);
-      seconds -= 0.5;
+    long end = System.currentTimeMillis() + seconds * 1000L;
+    Region win;
+    while ((win = window()) == null) {
+      long left = end - System.currentTimeMillis();
+      if (left <= 0) {
+        break;
+      }
+      _osUtil.waitForWindowChange(Math.min(left, WaitInterval));
+    }
+    if (win != null && launched > 0) {
+      long nanos = System.nanoTime() - launched;
+      launched = 0;
+      launchToWindow = nanos / 1000000;
+      Metrics.time(Metrics.Counter.APP_WINDOWS, "", appNameGiven, nanos);
+      Debug.log(3, "App.waitForWindow: %s: window %d msec after launch", toStringShort(), launchToWindow);
     }
     return win;
   }
 
+  /**
+   * @return msec from the last open() until the window was there (waitForWindow), -1 if not known
+   */
+  public long getLaunchToWindow() {
+    return launchToWindow;
+  }
+
   public static boolean openLink(String url) {
     if (!Desktop.isDesktopSupported()) {
       return false;
@@ -487,21 +520,19 @@ public class App {
     if (!isValid()) {
       return false;
     }
-    long wait = -1;
-    for (int n = 0; n < maxTime; n++) {
-      wait = new Date().getTime();
+    // as before: isRunning() (maxTime 1) checks only once
+    long end = System.currentTimeMillis() + (maxTime - 1) * 1000L;
+    while (true) {
       int retVal = _osUtil.isRunning(makeAppEntry());
       if (retVal > 0) {
         init();
         break;
       }
-      if (n == 0) {
-        continue;
-      }
-      wait = 1000 - new Date().getTime() + wait;
-      if (wait > 0) {
-        RunTime.pause(wait / 1000f);
+      long left = end - System.currentTimeMillis();
+      if (left <= 0) {
+        break;
       }
+      _osUtil.waitForWindowChange(Math.min(left, WaitInterval));
     }
     return appPID > -1;
   }
@@ -560,6 +591,8 @@ public class App {
   }
 
   private App openAndWait(int waitTime) {
+    launched = System.nanoTime();
+    launchToWindow = -1;
     if (isImmediate) {
       appPID = _osUtil.open(appNameGiven);
     } else {
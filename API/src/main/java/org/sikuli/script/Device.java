@@ -216,7 +216,9 @@ public class Device {
         return true;
       }
       if (isMouse) {
-        lastPos = getLocation();
+        // an asynchronous smoothMove might still be running: where it will end
+        Location target = RobotDesktop.getMoveTarget();
+        lastPos = target != null ? target : getLocation();
       }
       inUse = false;
       this.owner = null;
@@ -228,6 +230,7 @@ public class Device {
   }
 
   protected Location getLocation() {
+    RobotDesktop.awaitMove();
     PointerInfo mp = MouseInfo.getPointerInfo();
     if (mp != null) {
       return new Location(MouseInfo.getPointerInfo().getLocation());
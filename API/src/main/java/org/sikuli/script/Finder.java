@@ -5,9 +5,19 @@ package org.sikuli.script;
 
 import org.sikuli.basics.Settings;
 import org.sikuli.basics.Debug;
+import org.sikuli.basics.Metrics;
+import org.sikuli.basics.Profiler;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import org.sikuli.natives.FindInput;
 import org.sikuli.natives.FindResult;
 import org.sikuli.natives.FindResults;
@@ -35,6 +45,9 @@ public class Finder implements Iterator<Match> {
   private boolean repeating = false;
   private boolean valid = true;
   private boolean screenFinder = true;
+  private BufferedImage _sourceImage = null;
+
+  private static ExecutorService textExecutor = null;
 
   static {
     RunTime.loadLibrary("VisionProxy");
@@ -46,6 +59,10 @@ public class Finder implements Iterator<Match> {
     Debug.logx(level, me + message, args);
   }
 
+  private static final Profiler.Timer tFind = Profiler.timer("Finder.find");
+  private static final Profiler.Timer tFindAll = Profiler.timer("Finder.findAll");
+  private static final Profiler.Timer tFindAllText = Profiler.timer("Finder.findAllText");
+
 //<editor-fold defaultstate="collapsed" desc="Constructors">
   /**
    * Just to force library initialization
@@ -74,7 +91,8 @@ public class Finder implements Iterator<Match> {
   public Finder(String imageFilename, Region region) throws IOException  {
     Image img = Image.create(imageFilename);
     if (img.isValid()) {
-      _findInput.setSource(Image.convertBufferedImageToMat(img.get()));
+      _sourceImage = img.get();
+      _findInput.setSource(Image.convertBufferedImageToMat(_sourceImage));
       _region = region;
       screenFinder = false;
     } else {
@@ -89,6 +107,7 @@ public class Finder implements Iterator<Match> {
    * @param bimg BufferedImage
    */
   public Finder(BufferedImage bimg) {
+    _sourceImage = bimg;
     _findInput.setSource(Image.convertBufferedImageToMat(bimg));
   }
 
@@ -118,16 +137,18 @@ public class Finder implements Iterator<Match> {
    */
   public Finder(Image img) {
     log(lvl, "Image: %s", img);
-    _findInput.setSource(Image.convertBufferedImageToMat(img.get()));
+    _sourceImage = img.get();
+    _findInput.setSource(Image.convertBufferedImageToMat(_sourceImage));
   }
 
   public void resetImage(Image img) {
-    _findInput.setSource(Image.convertBufferedImageToMat(img.get()));
+    _sourceImage = img.get();
+    _findInput.setSource(Image.convertBufferedImageToMat(_sourceImage));
   }
 
   private void initScreenFinder(ScreenImage simg, Region region) {
-    setScreenImage(simg);
     _region = region;
+    setScreenImage(simg);
   }
 
   /**
@@ -159,7 +180,16 @@ public class Finder implements Iterator<Match> {
    * @param simg ScreenImage
    */
   protected void setScreenImage(ScreenImage simg) {
-    _findInput.setSource(Image.convertBufferedImageToMat(simg.getImage()));
+    _sourceImage = simg.getImage();
+    _findInput.setSource(Image.convertBufferedImageToMat(_sourceImage));
+    countMatConversion("");
+  }
+
+  private void countMatConversion(String imageName) {
+    if (Metrics.isOn()) {
+      Metrics.count(Metrics.Counter.MAT_CONVERSIONS,
+              _region == null ? "" : Metrics.screenType(_region.getScreen()), imageName);
+    }
   }
 
   public boolean isValid() {
@@ -167,6 +197,99 @@ public class Finder implements Iterator<Match> {
   }
   //</editor-fold>
 
+  // a text search uses the OCR engine: leased from the TextRecognizer pool
+  private FindResults visionFind() {
+    TextRecognizer tr;
+    if (_findInput.getTargetType() != TARGET_TYPE.TEXT || (tr = TextRecognizer.getInstance()) == null) {
+      return Vision.find(_findInput);
+    }
+    if (Settings.OcrTextDetection && _sourceImage != null) {
+      return findTextInBoxes(tr);
+    }
+    TextRecognizer.Engine engine = tr.lease();
+    try {
+      return engine.find(_findInput);
+    } finally {
+      tr.release(engine);
+    }
+  }
+
+  // Settings.OcrTextDetection: the text search only in the boxes proposed by the TextDetector
+  // (the image conversion in parallel, the OCR as the engine pool allows)
+  private FindResults findTextInBoxes(final TextRecognizer tr) {
+    final String text = _findInput.getTargetText();
+    final boolean findAll = _findInput.isFindingAll();
+    final double similarity = _findInput.getSimilarity();
+    List<Rectangle> boxes = TextDetector.detect(_sourceImage);
+    List<Future<List<FindResult>>> futures = new ArrayList<Future<List<FindResult>>>();
+    for (final Rectangle box : boxes) {
+      futures.add(getTextExecutor().submit(new Callable<List<FindResult>>() {
+        @Override
+        public List<FindResult> call() {
+          BufferedImage part = _sourceImage.getSubimage(box.x, box.y, box.width, box.height);
+          FindInput boxInput = new FindInput(Image.convertBufferedImageToMat(part), TARGET_TYPE.TEXT, text);
+          boxInput.setFindAll(findAll);
+          boxInput.setSimilarity(similarity);
+          FindResults boxResults;
+          TextRecognizer.Engine engine = tr.lease();
+          try {
+            boxResults = engine.find(boxInput);
+          } finally {
+            tr.release(engine);
+          }
+          List<FindResult> found = new ArrayList<FindResult>();
+          for (int n = 0; n < boxResults.size(); n++) {
+            FindResult fr = boxResults.get(n);
+            FindResult result = new FindResult(fr.getX() + box.x, fr.getY() + box.y, fr.getW(), fr.getH(), fr.getScore());
+            result.setText(fr.getText());
+            found.add(result);
+          }
+          return found;
+        }
+      }));
+    }
+    List<FindResult> found = new ArrayList<FindResult>();
+    for (Future<List<FindResult>> future : futures) {
+      try {
+        found.addAll(future.get());
+      } catch (Exception ex) {
+        log(-1, "findText: %s: %s", text, ex.getCause() == null ? ex : ex.getCause());
+      }
+    }
+    FindResults results = new FindResults();
+    if (findAll) {
+      for (FindResult fr : found) {
+        results.add(fr);
+      }
+    } else if (!found.isEmpty()) {
+      FindResult best = found.get(0);
+      for (FindResult fr : found) {
+        if (fr.getScore() > best.getScore()) {
+          best = fr;
+        }
+      }
+      results.add(best);
+    }
+    log(lvl + 1, "findText: %s: %d boxes: %d found", text, boxes.size(), found.size());
+    return results;
+  }
+
+  private static synchronized ExecutorService getTextExecutor() {
+    if (textExecutor == null) {
+      textExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+        private int count = 0;
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "SikuliX-TextFinder-" + count++);
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return textExecutor;
+  }
+
 //<editor-fold defaultstate="collapsed" desc="internal repeating">
   /**
    * internal use: to be able to reuse the same Finder
@@ -179,18 +302,20 @@ public class Finder implements Iterator<Match> {
    * internal use: repeat with same Finder
    */
   protected void findRepeat() {
-    _results = Vision.find(_findInput);
+    long start = Profiler.start();
+    _results = visionFind();
     _cur_result_i = 0;
+    tFind.stop(start);
   }
 
   /**
    * internal use: repeat with same Finder
    */
   protected void findAllRepeat() {
-    Debug timing = Debug.startTimer("Finder.findAll");
-    _results = Vision.find(_findInput);
+    long start = Profiler.start();
+    _results = visionFind();
     _cur_result_i = 0;
-    timing.end();
+    tFindAll.stop(start);
   }
 //</editor-fold>
 
@@ -232,8 +357,10 @@ public class Finder implements Iterator<Match> {
       _pattern = aPtn;
       _findInput.setTarget(aPtn.getImage().getMatNative());
       _findInput.setSimilarity(aPtn.getSimilar());
-      _results = Vision.find(_findInput);
+      long start = Profiler.start();
+      _results = visionFind();
       _cur_result_i = 0;
+      tFind.stop(start);
       return aPtn.getFilename();
     } else {
       return null;
@@ -254,8 +381,10 @@ public class Finder implements Iterator<Match> {
     if (img.isValid()) {
       _findInput.setTarget(img.getMatNative());
       _findInput.setSimilarity(Settings.MinSimilarity);
-      _results = Vision.find(_findInput);
+      long start = Profiler.start();
+      _results = visionFind();
       _cur_result_i = 0;
+      tFind.stop(start);
       return img.getFilename();
     } else if (img.isUseable()) {
       return find(new Pattern(img));
@@ -276,7 +405,7 @@ public class Finder implements Iterator<Match> {
       return null;
     }
     _findInput.setTarget(TARGET_TYPE.TEXT, text);
-    _results = Vision.find(_findInput);
+    _results = visionFind();
     _cur_result_i = 0;
     return text;
   }
@@ -322,10 +451,10 @@ public class Finder implements Iterator<Match> {
       _findInput.setTarget(aPtn.getImage().getMatNative());
       _findInput.setSimilarity(aPtn.getSimilar());
       _findInput.setFindAll(true);
-      Debug timing = Debug.startTimer("Finder.findAll");
-      _results = Vision.find(_findInput);
+      long start = Profiler.start();
+      _results = visionFind();
       _cur_result_i = 0;
-      timing.end();
+      tFindAll.stop(start);
       return aPtn.getFilename();
     } else {
       return null;
@@ -347,10 +476,10 @@ public class Finder implements Iterator<Match> {
       _findInput.setTarget(img.getMatNative());
       _findInput.setSimilarity(Settings.MinSimilarity);
       _findInput.setFindAll(true);
-      Debug timing = Debug.startTimer("Finder.findAll");
-      _results = Vision.find(_findInput);
+      long start = Profiler.start();
+      _results = visionFind();
       _cur_result_i = 0;
-      timing.end();
+      tFindAll.stop(start);
       return img.getFilename();
     } else {
       return null;
@@ -370,10 +499,10 @@ public class Finder implements Iterator<Match> {
     }
     _findInput.setTarget(TARGET_TYPE.TEXT, text);
     _findInput.setFindAll(true);
-    Debug timing = Debug.startTimer("Finder.findAllText");
-    _results = Vision.find(_findInput);
+    long start = Profiler.start();
+    _results = visionFind();
     _cur_result_i = 0;
-    timing.end();
+    tFindAllText.stop(start);
     return text;
   }
 //</editor-fold>
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.script;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * INTERNAL USE
+ * function template for (alternative) screen capture implementations used by RobotDesktop.captureScreen
+ * (selected with Settings.CaptureProvider)
+ */
+public interface ICaptureProvider {
+
+  /**
+   * @return the name as used in Settings.CaptureProvider
+   */
+  public String getName();
+
+  /**
+   * @param rect the area in the coordinates of the whole desktop
+   * @return the pixels - preferably TYPE_3BYTE_BGR (converted to an OpenCV Mat without a copy of the pixels) -
+   * or null if not possible (java.awt.Robot is used instead)
+   */
+  public BufferedImage capture(Rectangle rect);
+
+  /**
+   * @return the areas of the desktop changed between the last two captures (null: not known)
+   */
+  public List<Rectangle> getChanges();
+
+  /**
+   * release all resources (not used any longer)
+   */
+  public void close();
+}
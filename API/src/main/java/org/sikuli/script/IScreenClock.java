@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.script;
+
+/**
+ * INTERNAL USE
+ * optional for IScreen implementations with their own clock (e.g. a test screen):
+ * wait and observe then use this clock instead of the wall clock
+ */
+public interface IScreenClock {
+
+  /**
+   * @return the time in msec (only differences are used)
+   */
+  public long getTime();
+
+  /**
+   * pause between the searches of wait and observe on this clock
+   *
+   * @param msec time to pass
+   */
+  public void pause(long msec);
+}
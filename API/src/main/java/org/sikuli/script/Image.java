@@ -22,7 +22,6 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -33,6 +32,8 @@ import org.opencv.core.Mat;
 import org.opencv.imgproc.Imgproc;
 import org.sikuli.basics.Debug;
 import org.sikuli.basics.FileManager;
+import org.sikuli.basics.Metrics;
+import org.sikuli.basics.Profiler;
 import org.sikuli.basics.Settings;
 import org.sikuli.natives.Vision;
 
@@ -92,7 +93,7 @@ public class Image {
       while (images.size() > 0 && currentMemory > maxMemory) {
         first = images.remove(0);
         first.bimg = null;
-        currentMemory -= first.bsize;
+        currentMemory -= first.bsize + first.dropMatNative();
       }
       if (maxMemory == 0) {
         currentMemory = 0;
@@ -134,7 +135,7 @@ public class Image {
     URL uImage = imageNames.get(fpImage);
     if (imageFiles.containsKey(uImage)) {
       Image image = imageFiles.get(uImage);
-      int sizeOld = image.bsize;
+      int sizeOld = image.bsize + image.dropMatNative();
       if (null != image.loadAgain()) {
         currentMemoryDownUp(sizeOld, image.bsize);
         image.setLastSeen(null, 0);
@@ -202,6 +203,10 @@ public class Image {
 
 //<editor-fold defaultstate="collapsed" desc="bimg">
   private BufferedImage bimg = null;
+  private org.sikuli.natives.Mat matNative = null;
+  private BufferedImage matNativeOf = null;
+  // the size of matNative: it counts in the cache memory (Settings.ImageCache) as bimg does
+  private int msize = 0;
 
   protected Image setBimg(BufferedImage bimg) {
     this.bimg = bimg;
@@ -220,6 +225,15 @@ public class Image {
   private int bsize = 0;
   private int bwidth = -1;
   private int bheight = -1;
+
+  // gives back the size to be removed from the cache memory
+  private int dropMatNative() {
+    int size = msize;
+    matNative = null;
+    matNativeOf = null;
+    msize = 0;
+    return size;
+  }
 //</editor-fold>
 
   private ImageGroup group = null;
@@ -876,7 +890,7 @@ public class Image {
         if (imagePurgeList.contains(img)) {
           bit.remove();
           log(lvl + 1, "purge: bimg: %s", img);
-          currentMemoryDown(img.bsize);
+          currentMemoryDown(img.bsize + img.dropMatNative());
         }
       }
     }
@@ -959,7 +973,7 @@ public class Image {
     if (img == null) {
       return;
     }
-    currentMemoryDown(img.bsize);
+    currentMemoryDown(img.bsize + img.dropMatNative());
     img.setBimg(null);
     images.remove(img);
   }
@@ -1326,11 +1340,20 @@ public class Image {
     return createMat(get());
   }
 
+  private static final Profiler.Timer tCreateMat = Profiler.timer("Image.createMat");
+  private static final Profiler.Timer tCreateMatNative = Profiler.timer("Image.createMatNative");
+
   protected static Mat createMat(BufferedImage img) {
     if (img != null) {
-      Debug timer = Debug.startTimer("Mat create\t (%d x %d) from \n%s", img.getWidth(), img.getHeight(), img);
+      long start = Profiler.start();
+      if (isPlainBGR(img)) {
+        // e.g. from the capture provider xshm: already the layout of a CV_8UC3 Mat
+        Mat mat = new Mat(img.getHeight(), img.getWidth(), CvType.CV_8UC3);
+        mat.put(0, 0, ((DataBufferByte) img.getRaster().getDataBuffer()).getData());
+        tCreateMat.stop(start);
+        return mat;
+      }
       Mat mat_ref = new Mat(img.getHeight(), img.getWidth(), CvType.CV_8UC4);
-      timer.lap("init");
       byte[] data;
       BufferedImage cvImg;
       ColorSpace cs = ColorSpace.getInstance(ColorSpace.CS_sRGB);
@@ -1340,23 +1363,31 @@ public class Image {
       DataBufferByte db = new DataBufferByte(img.getWidth() * img.getHeight() * 4);
       WritableRaster r = WritableRaster.createWritableRaster(sm, db, new Point(0, 0));
       cvImg = new BufferedImage(cm, r, false, null);
-      timer.lap("empty");
       Graphics2D g = cvImg.createGraphics();
       g.drawImage(img, 0, 0, null);
       g.dispose();
-      timer.lap("created");
       data = ((DataBufferByte) cvImg.getRaster().getDataBuffer()).getData();
       mat_ref.put(0, 0, data);
       Mat mat = new Mat();
-      timer.lap("filled");
       Imgproc.cvtColor(mat_ref, mat, Imgproc.COLOR_RGBA2BGR, 3);
-      timer.end();
+      tCreateMat.stop(start);
       return mat;
     } else {
       return null;
     }
   }
 
+  private static boolean isPlainBGR(BufferedImage img) {
+    if (img.getType() != BufferedImage.TYPE_3BYTE_BGR) {
+      return false;
+    }
+    // not a subimage: the data buffer contains exactly the pixels of the image
+    WritableRaster raster = img.getRaster();
+    return raster.getParent() == null && raster.getSampleModelTranslateX() == 0
+            && raster.getSampleModelTranslateY() == 0
+            && raster.getDataBuffer().getSize() == img.getWidth() * img.getHeight() * 3;
+  }
+
   /**
    * to get old style OpenCV Mat for FindInput
    *
@@ -1364,19 +1395,47 @@ public class Image {
    * @deprecated
    */
   @Deprecated
-  protected org.sikuli.natives.Mat getMatNative() {
-    return convertBufferedImageToMat(get());
+  protected synchronized org.sikuli.natives.Mat getMatNative() {
+    BufferedImage img = get();
+    org.sikuli.natives.Mat mat = matNative;
+    if (mat != null && matNativeOf == img) {
+      return mat;
+    }
+    mat = convertBufferedImageToMat(img);
+    if (mat != null && Metrics.isOn()) {
+      Metrics.count(Metrics.Counter.MAT_CONVERSIONS, "", getName());
+    }
+    // kept for the next find with this image as long as the pixels are the same (FindInput only reads it)
+    // only for images in the cache: the Mat counts in its memory and goes with the image
+    if (mat != null && isCaching() && images.contains(this)) {
+      int sizeOld = dropMatNative();
+      matNative = mat;
+      matNativeOf = img;
+      msize = img.getWidth() * img.getHeight() * 3;
+      currentMemoryDownUp(sizeOld, msize);
+    }
+    return mat;
+  }
+
+  /**
+   * loads the image and prepares the Mat used by a find, so the next find with this image can start at once
+   * (e.g. while the mouse is still moving - Region.clickThenWait)
+   *
+   * @return this
+   */
+  public Image preload() {
+    if (isValid()) {
+      getMatNative();
+    }
+    return this;
   }
 
   protected static org.sikuli.natives.Mat convertBufferedImageToMat(BufferedImage img) {
     if (img != null) {
-      long theMatTime = new Date().getTime();
+      long start = Profiler.start();
       byte[] data = convertBufferedImageToByteArray(img);
       org.sikuli.natives.Mat theMat = Vision.createMat(img.getHeight(), img.getWidth(), data);
-      if (Settings.FindProfiling) {
-        Debug.logp("[FindProfiling] createCVMat [%d x %d]: %d msec",
-                img.getWidth(), img.getHeight(), new Date().getTime() - theMatTime);
-      }
+      tCreateMatNative.stop(start);
       return theMat;
     } else {
       return null;
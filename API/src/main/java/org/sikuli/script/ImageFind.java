@@ -17,6 +17,8 @@ import org.opencv.core.Rect;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 import org.sikuli.basics.Debug;
+import org.sikuli.basics.Metrics;
+import org.sikuli.basics.Profiler;
 import org.sikuli.basics.Settings;
 
 /**
@@ -32,6 +34,9 @@ public class ImageFind implements Iterator<Match>{
     Debug.logx(level, me + message, args);
   }
 
+  private static final Profiler.Timer tFindDown = Profiler.timer("ImageFind.doFindDown");
+  private static final Profiler.Timer tFindMatch = Profiler.timer("ImageFind.doFindMatch");
+
   private ImageFinder owner = null;
 
   private boolean isValid = false;
@@ -224,6 +229,11 @@ public class ImageFind implements Iterator<Match>{
         log(3, "downsampling: trying ...");
         doFindDown(0, resizeFactor);
         fres = findDownRes;
+        if (Metrics.isOn()) {
+          Metrics.count(fres == null ? Metrics.Counter.DOWNSAMPLE_MISSES : Metrics.Counter.DOWNSAMPLE_HITS,
+                  Metrics.screenType(owner.isRegion ? owner.region.getScreen() : owner.screen),
+                  pImage == null ? "" : pImage.getName());
+        }
       }
       if (fres == null) {
         if (!isInnerFind) {
@@ -300,7 +310,7 @@ public class ImageFind implements Iterator<Match>{
 
   private Core.MinMaxLocResult doFindDown(int level, double factor) {
     Debug.enter(me + ": doFindDown (%d - 1/%.2f)", level, factor * resizeLevels[level]);
-    Debug timer = Debug.startTimer("doFindDown");
+    long start = Profiler.start();
     Mat b = new Mat();
     Mat p = new Mat();
     Core.MinMaxLocResult dres = null;
@@ -317,12 +327,12 @@ public class ImageFind implements Iterator<Match>{
               (int) (dres.maxLoc.x * rfactor), (int) (dres.maxLoc.y * rfactor));
     } else {
       dres = doFindMatch(owner.base, probe);
-      timer.end();
+      tFindDown.stop(start);
       return dres;
     }
     if (dres.maxVal < resizeMinSim) {
       if (level == resizeMaxLevel) {
-        timer.end();
+        tFindDown.stop(start);
         return null;
       }
       if (level == 0) {
@@ -335,11 +345,12 @@ public class ImageFind implements Iterator<Match>{
         dres.maxLoc.y *= rfactor;
         findDownRes = dres;
     }
-    timer.end();
+    tFindDown.stop(start);
     return null;
   }
 
   private Core.MinMaxLocResult doFindMatch(Mat base, Mat probe) {
+    long start = Profiler.start();
     Mat res = new Mat();
     Mat bi = new Mat();
     Mat pi = new Mat();
@@ -356,7 +367,9 @@ public class ImageFind implements Iterator<Match>{
       Imgproc.matchTemplate(bi, pi, res, Imgproc.TM_SQDIFF_NORMED);
       Core.subtract(Mat.ones(res.size(), CvType.CV_32F), res, res);
     }
-    return Core.minMaxLoc(res);
+    Core.MinMaxLocResult result = Core.minMaxLoc(res);
+    tFindMatch.stop(start);
+    return result;
   }
 
   @Override
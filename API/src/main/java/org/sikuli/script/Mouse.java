@@ -258,7 +258,11 @@ public class Mouse {
       profiler.end();
       return 0;
     }
-    get().device.use(region);
+    // remote robots (VNC, Android, virtual) do not use the local mouse (might be headless)
+    boolean isLocal = !r.isRemote();
+    if (isLocal) {
+      get().device.use(region);
+    }
     profiler.lap("after use");
     if (shouldMove) {
       r.smoothMove(loc);
@@ -293,7 +297,9 @@ public class Mouse {
     r.clickEnds();
     r.waitForIdle();
     profiler.lap("before let");
-    get().device.let(region);
+    if (isLocal) {
+      get().device.let(region);
+    }
     long duration = profiler.end();
     Debug.action(getClickMsg(loc, buttons, modifiers, dblClick, duration));
     return 1;
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.script;
+
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Metrics;
+import org.sikuli.basics.Settings;
+
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * INTERNAL USE: the OCR results of TextRecognizer for images read before
+ * <p>
+ * key: a hash of the pixels, the size, the OCR language and the kind of result (text, word, words, lines, ...),
+ * so an unchanged region (status bar, label) is not converted and read again<br>
+ * the least recently used entries are dropped, when Settings.OcrCacheSize is reached (0 switches the cache off)<br>
+ * cleared, when Settings.OcrLanguage changes or with TextRecognizer.reset()
+ */
+final class OCRCache {
+
+  private static void log(int level, String message, Object... args) {
+    Debug.logx(level, "OCRCache: " + message, args);
+  }
+
+  static final String TEXT = "text";
+  static final String WORD = "word";
+  static final String WORDS = "words";
+  static final String LINES = "lines";
+  static final String PARAGRAPHS = "paragraphs";
+
+  /**
+   * @param mode listText mode
+   * @return the kind of result for the key
+   */
+  static String kind(TextRecognizer.ListTextMode mode) {
+    if (mode == TextRecognizer.ListTextMode.LINE) {
+      return LINES;
+    }
+    if (mode == TextRecognizer.ListTextMode.PARAGRAPH) {
+      return PARAGRAPHS;
+    }
+    return WORDS;
+  }
+
+  private static final LinkedHashMap<Key, Object> entries = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+      return size() > Settings.OcrCacheSize;
+    }
+  };
+
+  private static String language = null;
+  private static final AtomicLong hits = new AtomicLong();
+  private static final AtomicLong misses = new AtomicLong();
+
+  private OCRCache() {
+  }
+
+  static boolean isOn() {
+    return Settings.OcrCacheSize > 0;
+  }
+
+  /**
+   * @param img  the image to be read
+   * @param kind TEXT, WORD, WORDS, LINES or PARAGRAPHS
+   * @return the key for get and put (null if the cache is off)
+   */
+  static Key key(BufferedImage img, String kind) {
+    if (!isOn() || img == null) {
+      return null;
+    }
+    return new Key(hash(img), img.getWidth(), img.getHeight(), Settings.OcrLanguage, kind);
+  }
+
+  /**
+   * @param key from key()
+   * @return the cached result (String or List of Word) or null
+   */
+  static Object get(Key key) {
+    if (key == null) {
+      return null;
+    }
+    Object result;
+    synchronized (entries) {
+      checkLanguage();
+      result = entries.get(key);
+    }
+    if (result == null) {
+      misses.incrementAndGet();
+      Metrics.count(Metrics.Counter.OCR_CACHE_MISSES, "", "");
+    } else {
+      hits.incrementAndGet();
+      Metrics.count(Metrics.Counter.OCR_CACHE_HITS, "", "");
+    }
+    return result;
+  }
+
+  static void put(Key key, Object result) {
+    if (key == null || result == null) {
+      return;
+    }
+    synchronized (entries) {
+      checkLanguage();
+      if (key.language.equals(language)) {
+        entries.put(key, result);
+      }
+    }
+  }
+
+  static void clear() {
+    synchronized (entries) {
+      entries.clear();
+      language = Settings.OcrLanguage;
+    }
+  }
+
+  static long getHits() {
+    return hits.get();
+  }
+
+  static long getMisses() {
+    return misses.get();
+  }
+
+  static int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  static void resetStatistics() {
+    hits.set(0);
+    misses.set(0);
+  }
+
+  private static void checkLanguage() {
+    if (language == null || !language.equals(Settings.OcrLanguage)) {
+      if (!entries.isEmpty()) {
+        log(3, "OcrLanguage now %s: %d entries dropped", Settings.OcrLanguage, entries.size());
+      }
+      entries.clear();
+      language = Settings.OcrLanguage;
+    }
+  }
+
+  private static long hash(BufferedImage img) {
+    int w = img.getWidth();
+    int h = img.getHeight();
+    int[] row = new int[w];
+    long hash = 0xcbf29ce484222325L;
+    for (int y = 0; y < h; y++) {
+      img.getRGB(0, y, w, 1, row, 0, w);
+      for (int pixel : row) {
+        hash = (hash ^ (pixel & 0xffffff)) * 0x100000001b3L;
+      }
+    }
+    return hash ^ (hash >>> 29);
+  }
+
+  static final class Key {
+    final long hash;
+    final int w;
+    final int h;
+    final String language;
+    final String kind;
+
+    Key(long hash, int w, int h, String language, String kind) {
+      this.hash = hash;
+      this.w = w;
+      this.h = h;
+      this.language = language == null ? "" : language;
+      this.kind = kind;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) other;
+      return hash == key.hash && w == key.w && h == key.h
+              && language.equals(key.language) && kind.equals(key.kind);
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (hash ^ (hash >>> 32)) * 31 + kind.hashCode();
+    }
+  }
+
+  /**
+   * a word, line or paragraph read by listText (position relative to the image)
+   */
+  static final class Word {
+    final int x;
+    final int y;
+    final int w;
+    final int h;
+    final double score;
+    final String text;
+
+    Word(int x, int y, int w, int h, double score, String text) {
+      this.x = x;
+      this.y = y;
+      this.w = w;
+      this.h = h;
+      this.score = score;
+      this.text = text;
+    }
+  }
+}
@@ -3,6 +3,7 @@
  */
 package org.sikuli.script;
 
+import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -361,6 +362,12 @@ public class Observer {
   private void callChangeObserver(FindResults results) {
     int n;
     log(lvl, "changes: %d in: %s", results.size(), observedRegion);
+    List<Rectangle> changed = new ArrayList<Rectangle>();
+    for (int i = 0; i < results.size(); i++) {
+      FindResult r = results.get(i);
+      changed.add(new Rectangle(r.getX(), r.getY(), r.getW(), r.getH()));
+    }
+    observedRegion.changedForText(changed);
     for (String name : eventNames.keySet()) {
       if (eventTypes.get(name) != ObserveEvent.Type.CHANGE) {
         continue;
@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.script;
+
+import org.sikuli.basics.Debug;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * INTERNAL USE --- NOT official API<br>
+ * runs the scripts of a multi-script run in parallel (Linux): each worker is an own JVM on an own X display
+ * <p>
+ * SikuliX keeps its state in static fields (Settings, ImagePath, the Screens and their robots, Mouse),
+ * so the workers are separate processes: each one has its own settings, image path and desktop.<br>
+ * The displays are Xvfb servers started for the run (:100, :101, ... - option runparallel.display
+ * for the first number, runparallel.screen for the size, default 1920x1080x24)
+ * or existing displays (option runparallel.displays, e.g. :1,:2).<br>
+ * A worker stays alive for all its scripts (Runner.runAll as with one script after the other, option runsession)
+ * and takes the next script from the list, as soon as it is done with one (who is faster, runs more).<br>
+ * A worker that dies is replaced, its script counts as failed (exit code -1).
+ * A worker that does not start stops its thread and gives its script back to the others;
+ * scripts left over, when no worker is there anymore, count as failed (exit code -1).
+ * A script returning -1 stops the run as with one script after the other (running scripts are finished).
+ * <p>
+ * exit code: 0 if all scripts returned 0, otherwise the exit code of the first failed script in the given order
+ */
+public class ParallelRunner {
+
+  static final String me = "ParallelRunner: ";
+  static final int lvl = 3;
+
+  static void log(int level, String message, Object... args) {
+    Debug.logx(level, me + message, args);
+  }
+
+  static final String WORKER = "--parallelworker";
+  static final int CONNECT_TIMEOUT = 60000;
+
+  // the Xvfb servers and worker JVMs still running: stopped by the shutdown hook after Ctrl-C or a crash
+  private static final List<Process> processes = new CopyOnWriteArrayList<Process>();
+  private static Thread cleanup = null;
+
+  private static synchronized void addCleanup() {
+    if (cleanup == null) {
+      cleanup = new Thread("SikuliX-ParallelRunner-cleanup") {
+        @Override
+        public void run() {
+          for (Process process : processes) {
+            process.destroy();
+          }
+        }
+      };
+      Runtime.getRuntime().addShutdownHook(cleanup);
+    }
+  }
+
+  private final List<String> scripts;
+  private final String[] args;
+  private final ConcurrentLinkedQueue<Integer> todo = new ConcurrentLinkedQueue<Integer>();
+  private final int[] exitCodes;
+  private final long[] times;
+  private final int[] workerOf;
+  private volatile boolean terminated = false;
+
+  private ParallelRunner(String[] scripts, String[] args) {
+    this.scripts = Arrays.asList(scripts);
+    this.args = args == null ? new String[0] : args;
+    exitCodes = new int[scripts.length];
+    times = new long[scripts.length];
+    workerOf = new int[scripts.length];
+    for (int n = 0; n < scripts.length; n++) {
+      todo.add(n);
+      exitCodes[n] = -1;
+    }
+  }
+
+  /**
+   * @param scripts script names (absolute paths: the workers might have another working folder)
+   * @param args    the arguments given to each script
+   * @param workers number of parallel workers (displays)
+   * @return the consolidated exit code
+   */
+  public static int run(String[] scripts, String[] args, int workers) {
+    RunTime runTime = RunTime.get();
+    if (!runTime.runningLinux) {
+      log(-1, "only on Linux (X displays): running one script after the other");
+      return Runner.runAll(scripts, args, false);
+    }
+    for (int n = 0; n < scripts.length; n++) {
+      scripts[n] = new File(scripts[n]).getAbsolutePath();
+    }
+    return new ParallelRunner(scripts, args).runWorkers(Math.min(workers, scripts.length));
+  }
+
+  private int runWorkers(int workers) {
+    RunTime runTime = RunTime.get();
+    List<String> displays = new ArrayList<String>();
+    List<Process> servers = new ArrayList<Process>();
+    addCleanup();
+    String given = runTime.getOption("runparallel.displays", "");
+    if (!given.isEmpty()) {
+      displays.addAll(Arrays.asList(given.split(",")));
+      workers = Math.min(workers, displays.size());
+    } else {
+      int first = runTime.getOptionNumber("runparallel.display", 100);
+      String screen = runTime.getOption("runparallel.screen", "1920x1080x24");
+      for (int n = 0; n < workers; n++) {
+        Process server = startXvfb(first + n, screen);
+        if (server == null) {
+          break;
+        }
+        servers.add(server);
+        displays.add(":" + (first + n));
+      }
+      workers = displays.size();
+    }
+    if (workers == 0) {
+      log(-1, "no display: running one script after the other");
+      return Runner.runAll(scripts.toArray(new String[0]), args, false);
+    }
+    log(lvl, "%d scripts with %d workers on %s", scripts.size(), workers, displays);
+    long start = System.currentTimeMillis();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int n = 0; n < workers; n++) {
+      final int worker = n + 1;
+      final String display = displays.get(n).trim();
+      Thread thread = new Thread("SikuliX-Worker-" + worker) {
+        @Override
+        public void run() {
+          work(worker, display);
+        }
+      };
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      try {
+        thread.join();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    for (Process server : servers) {
+      server.destroy();
+      processes.remove(server);
+    }
+    return report(System.currentTimeMillis() - start);
+  }
+
+  private int report(long elapsed) {
+    int exitCode = 0;
+    long sum = 0;
+    for (int n = 0; n < scripts.size(); n++) {
+      if (workerOf[n] == 0) {
+        if (terminated) {
+          log(lvl, "%s: not run", scripts.get(n));
+          continue;
+        }
+        log(-1, "%s: not run (no worker) - counts as failed", scripts.get(n));
+        if (exitCode == 0) {
+          exitCode = -1;
+        }
+        continue;
+      }
+      log(lvl, "%s: returned %d (%d msec, worker %d)", scripts.get(n), exitCodes[n], times[n], workerOf[n]);
+      sum += times[n];
+      if (exitCode == 0 && exitCodes[n] != 0) {
+        exitCode = exitCodes[n];
+      }
+    }
+    log(lvl, "%d scripts: %d msec (one after the other: %d msec - %.1f x) exit code: %d",
+            scripts.size(), elapsed, sum, elapsed == 0 ? 0 : (double) sum / elapsed, exitCode);
+    return exitCode;
+  }
+
+  private static Process startXvfb(int display, String screen) {
+    File socket = new File("/tmp/.X11-unix/X" + display);
+    if (socket.exists()) {
+      log(-1, "display :%d already in use", display);
+      return null;
+    }
+    Process server;
+    try {
+      server = new ProcessBuilder("Xvfb", ":" + display, "-screen", "0", screen, "-nolisten", "tcp")
+              .redirectErrorStream(true).redirectOutput(new File("/dev/null")).start();
+      processes.add(server);
+    } catch (IOException ex) {
+      log(-1, "Xvfb not available: %s", ex.getMessage());
+      return null;
+    }
+    // ready, when the server socket is there
+    for (int n = 0; n < 100 && !socket.exists(); n++) {
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException ex) {
+        break;
+      }
+    }
+    if (!socket.exists()) {
+      log(-1, "Xvfb :%d did not start", display);
+      server.destroy();
+      processes.remove(server);
+      return null;
+    }
+    log(lvl, "Xvfb :%d (%s) started", display, screen);
+    return server;
+  }
+
+  // a worker JVM: the scripts and the exit codes go over a socket,
+  // the output of the scripts (stdout/stderr of the worker) is only logged
+  private static class Worker {
+    Process process;
+    Socket channel;
+    BufferedReader results;
+    PrintWriter scripts;
+
+    void stop() {
+      try {
+        channel.close();
+      } catch (Exception ex) {
+      }
+      process.destroy();
+      processes.remove(process);
+    }
+  }
+
+  private void work(int worker, String display) {
+    Worker process = null;
+    Integer next;
+    while ((next = todo.poll()) != null) {
+      String script = scripts.get(next);
+      if (process == null) {
+        try {
+          process = startWorker(worker, display);
+        } catch (Exception ex) {
+          // each further try would wait the timeout again: the other workers take the script
+          log(-1, "worker %d (%s) did not start: %s - stopping this worker", worker, display, ex);
+          todo.add(next);
+          return;
+        }
+      }
+      workerOf[next] = worker;
+      long start = System.currentTimeMillis();
+      try {
+        process.scripts.println(script);
+        String result = process.results.readLine();
+        int exitCode;
+        if (result == null) {
+          log(-1, "worker %d (%s) died while running %s", worker, display, script);
+          process.stop();
+          process = null;
+          exitCode = -1;
+        } else {
+          exitCode = Integer.parseInt(result.trim());
+          if (exitCode == -1) {
+            // as with one script after the other: no more scripts (the worker has ended)
+            log(lvl, "Exit code -1: Terminating multi-script-run");
+            terminated = true;
+            todo.clear();
+          }
+        }
+        exitCodes[next] = exitCode;
+      } catch (Exception ex) {
+        log(-1, "worker %d (%s): %s: %s - counts as failed", worker, display, script, ex);
+        exitCodes[next] = -1;
+        if (process != null) {
+          process.stop();
+          process = null;
+        }
+      }
+      times[next] = System.currentTimeMillis() - start;
+    }
+    if (process != null) {
+      process.scripts.close();
+      try {
+        process.process.waitFor();
+      } catch (InterruptedException ex) {
+      }
+      process.stop();
+    }
+  }
+
+  private Worker startWorker(final int worker, String display) throws IOException {
+    ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    try {
+      List<String> command = new ArrayList<String>();
+      command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+      command.add("-cp");
+      command.add(System.getProperty("java.class.path"));
+      command.add(ParallelRunner.class.getName());
+      command.add(WORKER);
+      command.add("" + Debug.getDebugLevel());
+      command.add("" + server.getLocalPort());
+      command.addAll(Arrays.asList(args));
+      ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+      builder.environment().put("DISPLAY", display);
+      Worker process = new Worker();
+      process.process = builder.start();
+      processes.add(process.process);
+      final BufferedReader output = new BufferedReader(
+              new InputStreamReader(process.process.getInputStream(), "UTF-8"));
+      Thread pump = new Thread("SikuliX-Worker-" + worker + "-output") {
+        @Override
+        public void run() {
+          try {
+            String line;
+            while ((line = output.readLine()) != null) {
+              Debug.logx(-3, "[%d] %s", worker, line);
+            }
+          } catch (IOException ex) {
+          }
+        }
+      };
+      pump.setDaemon(true);
+      pump.start();
+      server.setSoTimeout(CONNECT_TIMEOUT);
+      try {
+        process.channel = server.accept();
+      } catch (IOException ex) {
+        process.process.destroy();
+        processes.remove(process.process);
+        throw ex;
+      }
+      process.results = new BufferedReader(new InputStreamReader(process.channel.getInputStream(), "UTF-8"));
+      process.scripts = new PrintWriter(new OutputStreamWriter(process.channel.getOutputStream(), "UTF-8"), true);
+      return process;
+    } finally {
+      server.close();
+    }
+  }
+
+  /**
+   * the worker process: runs the scripts given over the channel to the parent (one per line, empty line or end: stop)
+   * and reports each exit code there (exit code -1: stop)
+   *
+   * @param args --parallelworker debuglevel port [script arguments]
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 3 || !WORKER.equals(args[0])) {
+      System.out.println("usage: internal use by Runner (option runparallel)");
+      System.exit(1);
+    }
+    Debug.setDebugLevel(args[1]);
+    Socket channel = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[2]));
+    String[] scriptArgs = Arrays.copyOfRange(args, 3, args.length);
+    RunTime.get();
+    BufferedReader in = new BufferedReader(new InputStreamReader(channel.getInputStream(), "UTF-8"));
+    PrintWriter out = new PrintWriter(new OutputStreamWriter(channel.getOutputStream(), "UTF-8"), true);
+    String script;
+    while ((script = in.readLine()) != null && !script.isEmpty()) {
+      int exitCode;
+      try {
+        exitCode = Runner.runAll(new String[]{script}, scriptArgs, false);
+      } catch (Exception ex) {
+        log(-1, "%s: %s", script, ex);
+        exitCode = -1;
+      }
+      out.println(exitCode);
+      if (exitCode == -1) {
+        break;
+      }
+    }
+    channel.close();
+    System.exit(0);
+  }
+}
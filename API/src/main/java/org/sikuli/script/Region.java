@@ -13,10 +13,18 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.sikuli.android.ADBDevice;
 import org.sikuli.android.ADBScreen;
 import org.sikuli.basics.Debug;
+import org.sikuli.basics.Metrics;
+import org.sikuli.basics.Profiler;
 import org.sikuli.basics.Settings;
 import org.sikuli.util.ScreenHighlighter;
 
@@ -35,6 +43,8 @@ public class Region {
     Debug.logx(level, me + message, args);
   }
 
+  private static ExecutorService preloader = null;
+
   //<editor-fold desc="housekeeping">
   /**
    * The Screen containing the Region
@@ -87,6 +97,7 @@ public class Region {
    * The {@link Observer} Singleton instance
    */
   private Observer regionObserver = null;
+  private TextTracker textTracker = null;
 
   /**
    * The last found {@link Match} in the Region
@@ -907,6 +918,14 @@ public class Region {
     return getScreen().getRobot();
   }
 
+  // the time for wait and observe: a screen might have its own clock (IScreenClock)
+  private long getTimeForRegion() {
+    if (getScreen() instanceof IScreenClock) {
+      return ((IScreenClock) getScreen()).getTime();
+    }
+    return new Date().getTime();
+  }
+
   /**
    *
    * @return the screen, that contains the top left corner of the region. Returns primary screen if outside of any
@@ -2362,6 +2381,8 @@ public class Region {
       }
     }
     if (null == response) {
+      countMetrics(Metrics.Counter.FINDFAILED, img, 0);
+      Debug.event("findfailed", "image", img.getName(), "region", this);
       throw new FindFailed(FindFailed.createdefault(this, img));
     }
     return lastMatch;
@@ -2471,6 +2492,8 @@ public class Region {
       }
     }
     if (null == response) {
+      countMetrics(Metrics.Counter.FINDFAILED, img, 0);
+      Debug.event("findfailed", "image", img.getName(), "region", this);
       throw new FindFailed(FindFailed.createdefault(this, img));
     }
     return lastMatches;
@@ -2596,6 +2619,7 @@ public class Region {
     Region reg;
     boolean finished = false;
     int subN;
+    Debug.Listener listener = Debug.getListener();
 
     public SubFindRun(Match[] pMArray, int pSubN,
             ScreenImage pBase, Object pTarget, Region pReg) {
@@ -2608,10 +2632,13 @@ public class Region {
 
     @Override
     public void run() {
+      Debug.setListener(listener);
       try {
         mArray[subN] = reg.findInImage(base, target);
       } catch (Exception ex) {
         log(-1, "findAnyCollect: image file not found:\n", target);
+      } finally {
+        Debug.setListener(null);
       }
       hasFinished(true);
     }
@@ -2714,9 +2741,13 @@ public class Region {
    * @throws FindFailed if the Find operation finally failed
    */
   public <PSI> Match wait(PSI target, double timeout) throws FindFailed {
+    return doWait(target, null, timeout);
+  }
+
+  private <PSI> Match doWait(PSI target, Image given, double timeout) throws FindFailed {
     lastMatch = null;
     String shouldAbort = "";
-    RepeatableFind rf = new RepeatableFind(target, null);
+    RepeatableFind rf = new RepeatableFind(target, given);
     Image img = rf._image;
     String targetStr = img.getName();
     Boolean response = true;
@@ -2754,6 +2785,8 @@ public class Region {
     }
     log(lvl, "wait: %s did not appear [%d msec]", targetStr, new Date().getTime() - lastFindTime);
     if (!shouldAbort.isEmpty()) {
+      countMetrics(Metrics.Counter.FINDFAILED, img, 0);
+      Debug.event("findfailed", "image", targetStr, "region", this);
       throw new FindFailed(shouldAbort);
     }
     return lastMatch;
@@ -2859,6 +2892,9 @@ public class Region {
   //</editor-fold>
 
   //<editor-fold defaultstate="collapsed" desc="find internal methods">
+  private static final Profiler.Timer tDoFindRepeat = Profiler.timer("Region.doFind.repeat");
+  private static final Profiler.Timer tDoFindFinal = Profiler.timer("Region.doFind.final");
+
   /**
    * Match doFind( Pattern/String/Image ) finds the given pattern on the screen and returns the best match without
    * waiting.
@@ -2871,20 +2907,21 @@ public class Region {
     ScreenImage simg;
     double findTimeout = autoWaitTimeout;
     String someText = "";
+    long searchStart = 0;
     if (repeating != null) {
       findTimeout = repeating.getFindTimeOut();
     }
     if (repeating != null && repeating._finder != null) {
-      simg = getScreen().capture(this);
+      simg = captureForFind(img);
       f = repeating._finder;
       f.setScreenImage(simg);
       f.setRepeating();
-      if (Settings.FindProfiling) {
-        Debug.logp("[FindProfiling] Region.doFind repeat: %d msec",
-                new Date().getTime() - lastSearchTimeRepeat);
-      }
       lastSearchTime = (new Date()).getTime();
+      searchStart = System.nanoTime();
       f.findRepeat();
+      if (Profiler.isOn()) {
+        tDoFindRepeat.record(System.nanoTime() - searchStart);
+      }
     } else {
       s = getScreen();
       lastFindTime = (new Date()).getTime();
@@ -2895,6 +2932,7 @@ public class Region {
         } else {
           if (img.isValid()) {
             lastSearchTime = (new Date()).getTime();
+            searchStart = System.nanoTime();
             f = checkLastSeenAndCreateFinder(img, findTimeout, null);
             if (!f.hasNext()) {
               runFinder(f, img);
@@ -2909,12 +2947,14 @@ public class Region {
           if (TextRecognizer.getInstance() != null) {
             f = new Finder(getScreen().capture(x, y, w, h), this);
             lastSearchTime = (new Date()).getTime();
+            searchStart = System.nanoTime();
             f.findText(someText);
           }
         }
       } else if (ptn instanceof Pattern) {
         if (img.isValid()) {
           lastSearchTime = (new Date()).getTime();
+          searchStart = System.nanoTime();
           f = checkLastSeenAndCreateFinder(img, findTimeout, (Pattern) ptn);
           if (!f.hasNext()) {
             runFinder(f, ptn);
@@ -2923,6 +2963,7 @@ public class Region {
       } else if (ptn instanceof Image) {
         if (img.isValid()) {
           lastSearchTime = (new Date()).getTime();
+          searchStart = System.nanoTime();
           f = checkLastSeenAndCreateFinder(img, findTimeout, null);
           if (!f.hasNext()) {
             runFinder(f, img);
@@ -2938,20 +2979,42 @@ public class Region {
       }
     }
     if (f != null) {
+      long searchNanos = System.nanoTime() - searchStart;
       lastSearchTimeRepeat = lastSearchTime;
       lastSearchTime = (new Date()).getTime() - lastSearchTime;
       if (f.hasNext()) {
         lastFindTime = (new Date()).getTime() - lastFindTime;
         m = f.next();
         m.setTimes(lastFindTime, lastSearchTime);
-        if (Settings.FindProfiling) {
-          Debug.logp("[FindProfiling] Region.doFind final: %d msec", lastSearchTime);
+        if (Profiler.isOn()) {
+          tDoFindFinal.record(searchNanos);
         }
+        countMetrics(Metrics.Counter.MATCHES, img, searchNanos);
       }
     }
+    if (Debug.hasListener()) {
+      Debug.event("find", "image", img == null ? "" + ptn : img.getName(), "found", m != null,
+              "msec", f == null ? -1 : lastSearchTime);
+    }
     return m;
   }
 
+  private ScreenImage captureForFind(Image img) {
+    if (!Metrics.isOn()) {
+      return getScreen().capture(this);
+    }
+    long start = System.nanoTime();
+    ScreenImage simg = getScreen().capture(this);
+    countMetrics(Metrics.Counter.CAPTURES, img, System.nanoTime() - start);
+    return simg;
+  }
+
+  private void countMetrics(Metrics.Counter counter, Image img, long nanos) {
+    if (Metrics.isOn()) {
+      Metrics.time(counter, Metrics.screenType(getScreen()), img == null ? "" : img.getName(), nanos);
+    }
+  }
+
   private void runFinder(Finder f, Object target) {
     if (Debug.shouldHighlight()) {
       if (this.scr.getW() > w + 20 && this.scr.getH() > h + 20) {
@@ -2971,7 +3034,7 @@ public class Region {
 
   private Finder doCheckLastSeenAndCreateFinder(ScreenImage base, Image img, double findTimeout, Pattern ptn) {
     if (base == null) {
-      base = getScreen().capture(this);
+      base = captureForFind(img);
     }
     boolean shouldCheckLastSeen = false;
     float score = 0;
@@ -3000,9 +3063,11 @@ public class Region {
         }
         if (f.hasNext()) {
           log(lvl, "checkLastSeen: still there");
+          countMetrics(Metrics.Counter.LASTSEEN_HITS, img, 0);
           return f;
         }
         log(lvl, "checkLastSeen: not there");
+        countMetrics(Metrics.Counter.LASTSEEN_MISSES, img, 0);
       }
     }
     if (Settings.UseImageFinder) {
@@ -3081,6 +3146,8 @@ public class Region {
 
     abstract boolean ifSuccessful();
 
+    abstract Image getImage();
+
     double getFindTimeOut() {
       return findTimeout;
     }
@@ -3092,9 +3159,13 @@ public class Region {
       findTimeout = timeout;
       int MaxTimePerScan = (int) (1000.0 / waitScanRate);
       int timeoutMilli = (int) (timeout * 1000);
-      long begin_t = (new Date()).getTime();
+      long begin_t = getTimeForRegion();
+      int runs = 0;
       do {
-        long before_find = (new Date()).getTime();
+        long before_find = getTimeForRegion();
+        if (runs++ > 0) {
+          countMetrics(Metrics.Counter.WAIT_RETRIES, getImage(), 0);
+        }
         run();
         if (ifSuccessful()) {
           return true;
@@ -3103,13 +3174,13 @@ public class Region {
           // or when using new ImageFinder
           return false;
         }
-        long after_find = (new Date()).getTime();
+        long after_find = getTimeForRegion();
         if (after_find - before_find < MaxTimePerScan) {
           getRobotForRegion().delay((int) (MaxTimePerScan - (after_find - before_find)));
         } else {
           getRobotForRegion().delay(10);
         }
-      } while (begin_t + timeout * 1000 > (new Date()).getTime());
+      } while (begin_t + timeout * 1000 > getTimeForRegion());
       return false;
     }
   }
@@ -3142,6 +3213,11 @@ public class Region {
       _match = doFind(_target, _image, this);
     }
 
+    @Override
+    Image getImage() {
+      return _image;
+    }
+
     @Override
     boolean ifSuccessful() {
       return _match != null;
@@ -3185,6 +3261,11 @@ public class Region {
       _matches = doFindAll(_target, this);
     }
 
+    @Override
+    Image getImage() {
+      return _image;
+    }
+
     @Override
     boolean ifSuccessful() {
       return _matches != null;
@@ -3232,6 +3313,14 @@ public class Region {
   //</editor-fold>
 
   //<editor-fold defaultstate="collapsed" desc="Observing">
+  // the Observer reports the changes (relative to the region) for the incremental text()
+  protected void changedForText(List<Rectangle> changes) {
+    TextTracker tracker = textTracker;
+    if (tracker != null) {
+      tracker.changed(changes);
+    }
+  }
+
   protected Observer getObserver() {
     if (regionObserver == null) {
       regionObserver = new Observer(this);
@@ -3525,7 +3614,7 @@ public class Region {
     }
     log(lvl, "observe: starting in " + this.toStringShort() + " for " + secs + " seconds");
     int MaxTimePerScan = (int) (1000.0 / observeScanRate);
-    long begin_t = (new Date()).getTime();
+    long begin_t = getTimeForRegion();
     long stop_t;
     if (secs > Long.MAX_VALUE) {
       stop_t = Long.MAX_VALUE;
@@ -3533,10 +3622,12 @@ public class Region {
       stop_t = begin_t + (long) (secs * 1000);
     }
     regionObserver.initialize();
+    // changes while not observed are not reported: the incremental text() starts again
+    textTracker = null;
     observing = true;
     Observing.addRunningObserver(this);
-    while (observing && stop_t > (new Date()).getTime()) {
-      long before_find = (new Date()).getTime();
+    while (observing && stop_t > getTimeForRegion()) {
+      long before_find = getTimeForRegion();
       ScreenImage simg = getScreen().capture(x, y, w, h);
       if (!regionObserver.update(simg)) {
         observing = false;
@@ -3545,7 +3636,11 @@ public class Region {
       if (!observing) {
         break;
       }
-      long after_find = (new Date()).getTime();
+      long after_find = getTimeForRegion();
+      if (getScreen() instanceof IScreenClock) {
+        ((IScreenClock) getScreen()).pause(Math.max(MaxTimePerScan - (after_find - before_find), 1));
+        continue;
+      }
       try {
         if (after_find - before_find < MaxTimePerScan) {
           Thread.sleep((int) (MaxTimePerScan - (after_find - before_find)));
@@ -3553,6 +3648,7 @@ public class Region {
       } catch (Exception e) {
       }
     }
+    textTracker = null;
     boolean observeSuccess = false;
     if (observing) {
       observing = false;
@@ -3586,6 +3682,7 @@ public class Region {
   private class ObserverThread implements Runnable {
 
     private double time;
+    private Debug.Listener listener = Debug.getListener();
 
     ObserverThread(double time) {
       this.time = time;
@@ -3593,7 +3690,12 @@ public class Region {
 
     @Override
     public void run() {
-      observeDo(time);
+      Debug.setListener(listener);
+      try {
+        observeDo(time);
+      } finally {
+        Debug.setListener(null);
+      }
     }
   }
 
@@ -3700,6 +3802,72 @@ public class Region {
     return ret;
   }
 
+  /**
+   * click(target) and then wait(next, timeout) - the image of next is loaded and prepared for the search
+   * in the background while the click is done (find of target, mouse move, click),
+   * so the first search for next starts right after the mouse button is released
+   *
+   * @param <PFRML> Pattern, Filename, Text, Region, Match or Location
+   * @param <PSI> Pattern, String or Image
+   * @param target to click
+   * @param next to wait for after the click
+   * @param timeout for the wait in seconds
+   * @return the match of next
+   * @throws FindFailed if target or next is not found
+   */
+  public <PFRML, PSI> Match clickThenWait(PFRML target, final PSI next, double timeout) throws FindFailed {
+    Future<Image> preloaded = null;
+    if (next instanceof String || next instanceof Pattern || next instanceof Image) {
+      preloaded = getPreloader().submit(new Callable<Image>() {
+        @Override
+        public Image call() {
+          Image img = Image.getImageFromTarget(next);
+          return img == null ? null : img.preload();
+        }
+      });
+    }
+    click(target);
+    Image img = null;
+    if (preloaded != null) {
+      try {
+        img = preloaded.get();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException ex) {
+        log(-1, "clickThenWait: preload: %s", ex.getCause());
+      }
+    }
+    return doWait(next, img, timeout);
+  }
+
+  /**
+   * clickThenWait(target, next, timeout) with the AutoWaitTimeout
+   *
+   * @param <PFRML> Pattern, Filename, Text, Region, Match or Location
+   * @param <PSI> Pattern, String or Image
+   * @param target to click
+   * @param next to wait for after the click
+   * @return the match of next
+   * @throws FindFailed if target or next is not found
+   */
+  public <PFRML, PSI> Match clickThenWait(PFRML target, PSI next) throws FindFailed {
+    return clickThenWait(target, next, autoWaitTimeout);
+  }
+
+  private static synchronized ExecutorService getPreloader() {
+    if (preloader == null) {
+      preloader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "SikuliX-Preload");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return preloader;
+  }
+
   /**
    * double click at the region's last successful match <br>use center if no lastMatch <br>if region is a match: click
    * targetOffset
@@ -4388,19 +4556,35 @@ public class Region {
       log(lvl, "%s TYPE \"%s\"", modText, showText);
       profiler.lap("before getting Robot");
       IRobot r = getRobotForRegion();
+      boolean noDelay = Settings.TypeDelay <= 0;
       int pause = 20 + (Settings.TypeDelay > 1 ? 1000 : (int) (Settings.TypeDelay * 1000));
       Settings.TypeDelay = 0.0;
+      long start = System.nanoTime();
+      String how = "typed";
       profiler.lap("before typing");
-      r.typeStarts();
-      for (int i = 0; i < text.length(); i++) {
-        r.pressModifiers(modifiers);
-        r.typeChar(text.charAt(i), IRobot.KeyMode.PRESS_RELEASE);
-        r.releaseModifiers(modifiers);
-        r.delay(pause);
+      // the clipboard is the local one: only on the local desktop
+      if (modifiers == 0 && Settings.TypePasteLength > 0 && text.length() >= Settings.TypePasteLength
+              && r instanceof RobotDesktop && isPastable(text)) {
+        how = "pasted";
+        pasteText(r, text);
+      } else if (noDelay && Settings.TypeBatch && r instanceof RobotDesktop
+              && ((RobotDesktop) r).typeBatch(text, modifiers, Settings.TypeRate)) {
+        how = "typed (batch)";
+      } else {
+        r.typeStarts();
+        for (int i = 0; i < text.length(); i++) {
+          r.pressModifiers(modifiers);
+          r.typeChar(text.charAt(i), IRobot.KeyMode.PRESS_RELEASE);
+          r.releaseModifiers(modifiers);
+          r.delay(pause);
+        }
+        r.typeEnds();
+        profiler.lap("after typing, before waitForIdle");
+        r.waitForIdle();
       }
-      r.typeEnds();
-      profiler.lap("after typing, before waitForIdle");
-      r.waitForIdle();
+      long nanos = System.nanoTime() - start;
+      log(lvl + 1, "%s %d characters: %.0f chars/sec", how, text.length(), text.length() * 1e9 / Math.max(nanos, 1));
+      Metrics.add(Metrics.Counter.TYPED_CHARS, Metrics.screenType(getScreen()), "", text.length(), nanos);
       profiler.end();
       return 1;
     }
@@ -4447,17 +4631,32 @@ public class Region {
       click(target, 0);
     }
     if (text != null) {
-      App.setClipboard(text);
-      int mod = Key.getHotkeyModifier();
-      IRobot r = getRobotForRegion();
-      r.keyDown(mod);
-      r.keyDown(KeyEvent.VK_V);
-      r.keyUp(KeyEvent.VK_V);
-      r.keyUp(mod);
+      pasteText(getRobotForRegion(), text);
       return 0;
     }
     return 1;
   }
+
+  // the clipboard is not restored: the receiving app might fetch the content later
+  private static void pasteText(IRobot r, String text) {
+    App.setClipboard(text);
+    int mod = Key.getHotkeyModifier();
+    r.keyDown(mod);
+    r.keyDown(KeyEvent.VK_V);
+    r.keyUp(KeyEvent.VK_V);
+    r.keyUp(mod);
+  }
+
+  // pasting gives the same as typing: only printable characters (no Key constants, tabs, newlines)
+  private static boolean isPastable(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (Character.isISOControl(c) || (c >= Key.cMin && c <= Key.cMax)) {
+        return false;
+      }
+    }
+    return true;
+  }
   //</editor-fold>
 
   //<editor-fold desc="Mobile actions (Android)">
@@ -4599,7 +4798,18 @@ public class Region {
         Debug.error("text: text recognition is now switched off");
         return "--- no text ---";
       }
-      String textRead = tr.recognize(simg);
+      String textRead;
+      if (Settings.OcrTextIncremental && isObserving() && !Settings.UseImageFinder) {
+        TextTracker tracker = textTracker;
+        if (tracker == null) {
+          tracker = new TextTracker();
+          textTracker = tracker;
+        }
+        textRead = tracker.read(simg, tr);
+      } else {
+        textTracker = null;
+        textRead = tr.recognize(simg);
+      }
       log(lvl, "text: #(" + textRead + ")#");
       return textRead;
     }
@@ -4616,6 +4826,18 @@ public class Region {
    * @return a list of matches
    */
   public List<Match> listText() {
+    return listText(TextRecognizer.ListTextMode.WORD);
+  }
+
+  /**
+   * VERY EXPERIMENTAL: like listText(), but the matches are words, lines or paragraphs<br>
+   * Match.getText() of a paragraph contains the lines separated by newline,
+   * Match.getScore() of a line or paragraph is the mean of the words' scores
+   *
+   * @param mode WORD, LINE or PARAGRAPH
+   * @return a list of matches
+   */
+  public List<Match> listText(TextRecognizer.ListTextMode mode) {
     if (Settings.OcrTextRead) {
       ScreenImage simg = getScreen().capture(x, y, w, h);
       TextRecognizer tr = TextRecognizer.getInstance();
@@ -4623,11 +4845,47 @@ public class Region {
         Debug.error("text: text recognition is now switched off");
         return null;
       }
-      log(lvl, "listText: scanning %s", this);
-      return tr.listText(simg, this);
+      log(lvl, "listText: scanning %s (%s)", this, mode);
+      return tr.listText(simg, this, mode);
     }
     Debug.error("text: text recognition is currently switched off");
     return null;
   }
+
+  /**
+   * VERY EXPERIMENTAL: the first word in this region, that contains the given text (one OCR, no waiting)<br>
+   * other than findText(), the words of the OCR result are compared (no fuzzy search)
+   *
+   * @param word the text
+   * @return the match of the word
+   * @throws FindFailed if not found or text recognition is switched off
+   */
+  public Match findWord(String word) throws FindFailed {
+    return findTextIn(word, TextRecognizer.ListTextMode.WORD);
+  }
+
+  /**
+   * VERY EXPERIMENTAL: the first line in this region, that contains the given text (one OCR, no waiting)
+   *
+   * @param text the text
+   * @return the match of the line
+   * @throws FindFailed if not found or text recognition is switched off
+   */
+  public Match findLine(String text) throws FindFailed {
+    return findTextIn(text, TextRecognizer.ListTextMode.LINE);
+  }
+
+  private Match findTextIn(String text, TextRecognizer.ListTextMode mode) throws FindFailed {
+    TextRecognizer tr = Settings.OcrTextRead ? TextRecognizer.getInstance() : null;
+    if (tr == null) {
+      throw new FindFailed("text recognition is switched off");
+    }
+    Match match = tr.findText(getScreen().capture(x, y, w, h), this, text, mode);
+    if (match == null) {
+      throw new FindFailed(String.format("%s: %s not found in %s", mode, text, this.toStringShort()));
+    }
+    log(lvl, "findTextIn(%s): %s: %s", mode, text, match);
+    return match;
+  }
   //</editor-fold>
 }
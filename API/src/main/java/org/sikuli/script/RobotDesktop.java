@@ -3,11 +3,11 @@
  */
 package org.sikuli.script;
 
-import org.sikuli.basics.Animator;
 import org.sikuli.basics.AnimatorOutQuarticEase;
-import org.sikuli.basics.AnimatorTimeBased;
+import org.sikuli.basics.AnimatorTimeValueFunction;
 import org.sikuli.basics.Settings;
 import org.sikuli.basics.Debug;
+import org.sikuli.x11.XShmCapture;
 import java.awt.AWTException;
 import java.awt.Color;
 import java.awt.MouseInfo;
@@ -19,6 +19,12 @@ import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * INTERNAL USE Implementation of IRobot making a DesktopRobot using java.awt.Robot
@@ -37,6 +43,10 @@ public class RobotDesktop extends Robot implements IRobot {
   private long start;
   private static boolean alwaysNewRobot = false;
   private static boolean isMouseInitialized = false;
+  private static volatile CaptureSetup captureSetup = null;
+  private static ExecutorService mover = null;
+  private static Future<?> pendingMove = null;
+  private static Location moveTarget = null;
 
   private void logRobot(int delay, String msg) {
     start = new Date().getTime();
@@ -60,6 +70,7 @@ public class RobotDesktop extends Robot implements IRobot {
   }
 
   private void doMouseDown(int buttons) {
+    awaitMove();
     if (Settings.RobotFake && runTime.needsRobotFake()) {
       Screen.getFakeRegion().silentHighlight(true);
     }
@@ -80,6 +91,7 @@ public class RobotDesktop extends Robot implements IRobot {
   }
 
   private void doMouseUp(int buttons) {
+    awaitMove();
     logRobot(stdAutoDelay, "MouseUp: WaitForIdle: %s - Delay: %d");
     setAutoDelay(stdAutoDelay);
     setAutoWaitForIdle(Settings.ClickFast);
@@ -92,6 +104,7 @@ public class RobotDesktop extends Robot implements IRobot {
   }
 
   private void doKeyPress(int keyCode) {
+    awaitMove();
     logRobot(stdAutoDelay, "KeyPress: WaitForIdle: %s - Delay: %d");
     setAutoDelay(stdAutoDelay);
     setAutoWaitForIdle(false);
@@ -103,6 +116,7 @@ public class RobotDesktop extends Robot implements IRobot {
   }
 
   private void doKeyRelease(int keyCode) {
+    awaitMove();
     logRobot(stdAutoDelay, "KeyRelease: WaitForIdle: %s - Delay: %d");
     setAutoDelay(stdAutoDelay);
     setAutoWaitForIdle(false);
@@ -144,25 +158,98 @@ public class RobotDesktop extends Robot implements IRobot {
   }
 
   @Override
-  public void smoothMove(Location src, Location dest, long ms) {
+  public void smoothMove(final Location src, final Location dest, final long ms) {
     Debug.log(4, "RobotDesktop: smoothMove (%.1f): " + src.toString() + "---" + dest.toString(), ms/1000f);
+    awaitMove();
     if (ms == 0) {
       doMouseMove(dest.x, dest.y);
       waitForIdle();
       checkMousePosition(dest);
       return;
     }
-    Animator aniX = new AnimatorTimeBased(
-            new AnimatorOutQuarticEase(src.x, dest.x, ms));
-    Animator aniY = new AnimatorTimeBased(
-            new AnimatorOutQuarticEase(src.y, dest.y, ms));
-    float x = 0, y = 0;
-    while (aniX.running()) {
-      x = aniX.step();
-      y = aniY.step();
-      doMouseMove((int) x, (int) y);
+    if (Settings.MoveMouseAsync) {
+      synchronized (RobotDesktop.class) {
+        moveTarget = dest;
+        pendingMove = getMover().submit(new Runnable() {
+          @Override
+          public void run() {
+            doSmoothMove(src, dest, ms);
+          }
+        });
+      }
+      return;
+    }
+    doSmoothMove(src, dest, ms);
+  }
+
+  private void doSmoothMove(Location src, Location dest, long ms) {
+    AnimatorTimeValueFunction funcX = new AnimatorOutQuarticEase(src.x, dest.x, ms);
+    AnimatorTimeValueFunction funcY = new AnimatorOutQuarticEase(src.y, dest.y, ms);
+    long period = Settings.MoveMouseRate > 0 ? 1000000000L / Settings.MoveMouseRate : 0;
+    long start = System.nanoTime();
+    long next = start;
+    long t;
+    while ((t = (System.nanoTime() - start) / 1000000L) < ms) {
+      doMouseMove((int) funcX.getValue(t), (int) funcY.getValue(t));
+      if (period > 0) {
+        // fixed rate: a late step is not caught up, the next one is a full period later
+        next = Math.max(next + period, System.nanoTime());
+        LockSupport.parkNanos(next - System.nanoTime());
+      }
+    }
+    doMouseMove(dest.x, dest.y);
+    checkMousePosition(dest);
+  }
+
+  /**
+   * waits until an asynchronous smoothMove (Settings.MoveMouseAsync) has ended
+   * (done before each mouse or key action)
+   */
+  public static void awaitMove() {
+    Future<?> move;
+    synchronized (RobotDesktop.class) {
+      move = pendingMove;
+    }
+    if (move == null) {
+      return;
+    }
+    try {
+      move.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException ex) {
+      Debug.error("RobotDesktop: smoothMove: %s", ex.getCause());
+    }
+    synchronized (RobotDesktop.class) {
+      if (pendingMove == move) {
+        pendingMove = null;
+        moveTarget = null;
+      }
+    }
+  }
+
+  /**
+   * @return where an asynchronous smoothMove (Settings.MoveMouseAsync) will end, null if none is running
+   */
+  public static synchronized Location getMoveTarget() {
+    if (pendingMove == null || pendingMove.isDone()) {
+      return null;
     }
-    checkMousePosition(new Location((int) x, (int) y));
+    return moveTarget;
+  }
+
+  private static synchronized ExecutorService getMover() {
+    if (mover == null) {
+      mover = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "SikuliX-smoothMove");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return mover;
   }
 
   private void checkMousePosition(Location p) {
@@ -240,15 +327,87 @@ public class RobotDesktop extends Robot implements IRobot {
 
   @Override
   public ScreenImage captureScreen(Rectangle rect) {
-//    Rectangle s = scr.getBounds();
-    Rectangle cRect = new Rectangle(rect);
-//    cRect.translate(-s.x, -s.y);
-    BufferedImage img = createScreenCapture(rect);
-    Debug.log(4, "RobotDesktop: captureScreen: [%d,%d, %dx%d]",
-            rect.x, rect.y, rect.width, rect.height);
+    ICaptureProvider provider = getCaptureProvider();
+    BufferedImage img = provider == null ? null : provider.capture(rect);
+    if (img == null) {
+      img = createScreenCapture(rect);
+    }
+    Debug.log(4, "RobotDesktop: captureScreen: [%d,%d, %dx%d]%s",
+            rect.x, rect.y, rect.width, rect.height, provider == null ? "" : " " + provider.getName());
     return new ScreenImage(rect, img);
   }
 
+  /**
+   * the capture provider as selected by Settings.CaptureProvider (taken again after a change of the setting)
+   *
+   * @return the provider or null for java.awt.Robot
+   */
+  public static ICaptureProvider getCaptureProvider() {
+    String name = Settings.CaptureProvider == null ? "awt" : Settings.CaptureProvider;
+    CaptureSetup setup = captureSetup;
+    if (setup != null && name.equals(setup.name)) {
+      return setup.provider;
+    }
+    return changeCaptureProvider(name);
+  }
+
+  // the provider with the setting it was taken for: read by each capture without a lock
+  private static class CaptureSetup {
+    final String name;
+    final ICaptureProvider provider;
+
+    CaptureSetup(String name, ICaptureProvider provider) {
+      this.name = name;
+      this.provider = provider;
+    }
+  }
+
+  private static synchronized ICaptureProvider changeCaptureProvider(String name) {
+    CaptureSetup setup = captureSetup;
+    if (setup == null || !name.equals(setup.name)) {
+      if (setup != null && setup.provider != null) {
+        setup.provider.close();
+      }
+      setup = new CaptureSetup(name, createCaptureProvider(name));
+      captureSetup = setup;
+    }
+    return setup.provider;
+  }
+
+  /**
+   * use the given capture provider (Settings.CaptureProvider is set to its name)
+   *
+   * @param provider the provider or null for java.awt.Robot
+   */
+  public static synchronized void setCaptureProvider(ICaptureProvider provider) {
+    CaptureSetup setup = captureSetup;
+    if (setup != null && setup.provider != null && setup.provider != provider) {
+      setup.provider.close();
+    }
+    String name = provider == null ? "awt" : provider.getName();
+    captureSetup = new CaptureSetup(name, provider);
+    Settings.CaptureProvider = name;
+  }
+
+  private static ICaptureProvider createCaptureProvider(String name) {
+    if ("awt".equals(name)) {
+      return null;
+    }
+    if ("xshm".equals(name) || "auto".equals(name)) {
+      ICaptureProvider provider = XShmCapture.start();
+      if (provider == null && "xshm".equals(name)) {
+        Debug.error("RobotDesktop: CaptureProvider xshm not available - using awt");
+      }
+      return provider;
+    }
+    try {
+      return (ICaptureProvider) Class.forName(name).getDeclaredConstructor().newInstance();
+    } catch (Exception ex) {
+      Debug.error("RobotDesktop: CaptureProvider %s not possible (%s) - using awt", name, ex);
+      return null;
+    }
+  }
+
   @Override
   public Color getColorAt(int x, int y) {
     return getPixelColor(x, y);
@@ -402,6 +561,58 @@ public class RobotDesktop extends Robot implements IRobot {
     doType(KeyMode.PRESS_RELEASE, key);
   }
 
+  /**
+   * types the text in one batch: the key codes of all characters are computed first,
+   * the modifiers are pressed once for the whole text and the keys are sent without any pause
+   * (waitForIdle only at the start and at the end)
+   *
+   * @param text      characters and/or Key constants
+   * @param modifiers constants according to class KeyModifier - combined
+   * @param rate      characters per second (0: as fast as possible)
+   * @return false if the text contains a character, that cannot be typed (nothing typed then)
+   */
+  public boolean typeBatch(String text, int modifiers, int rate) {
+    int[][] keys = new int[text.length()][];
+    try {
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = Key.toJavaKeyCode(text.charAt(i));
+      }
+    } catch (IllegalArgumentException ex) {
+      Debug.error("Robot: typeBatch: %s", ex.getMessage());
+      return false;
+    }
+    long nanosPerChar = rate > 0 ? 1000000000L / rate : 0;
+    awaitMove();
+    waitForIdle();
+    pressModifiers(modifiers);
+    setAutoDelay(0);
+    setAutoWaitForIdle(false);
+    long start = System.nanoTime();
+    try {
+      for (int i = 0; i < keys.length; i++) {
+        int[] codes = keys[i];
+        for (int n = 0; n < codes.length; n++) {
+          keyPress(codes[n]);
+        }
+        for (int n = codes.length - 1; n >= 0; n--) {
+          keyRelease(codes[n]);
+        }
+        if (nanosPerChar > 0) {
+          // paced against the start: no drift by the time the key events take
+          long wait = (start + (i + 1) * nanosPerChar - System.nanoTime()) / 1000000L;
+          if (wait > 0) {
+            delay((int) Math.min(wait, MAX_DELAY));
+          }
+        }
+      }
+    } finally {
+      setAutoDelay(stdAutoDelay);
+      releaseModifiers(modifiers);
+    }
+    waitForIdle();
+    return true;
+  }
+
   @Override
   public void typeStarts() {
   }
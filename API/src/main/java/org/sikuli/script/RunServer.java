@@ -11,9 +11,11 @@ import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.*;
+import java.util.concurrent.Semaphore;
 import java.util.regex.Matcher;
 import javax.script.ScriptEngine;
 import org.sikuli.basics.Debug;
+import org.sikuli.basics.Metrics;
 
 /**
  * EXPERIMENTAL --- NOT official API<br>
@@ -56,16 +58,31 @@ public class RunServer {
       userArgs = "\nWith User parameters: " + userArgs;
     }
     int port = getPort(args.length > 0 ? args[0] : null);
+    boolean useHTTP = (args.length > 1 && "http".equalsIgnoreCase(args[1]))
+            || "http".equalsIgnoreCase(RunTime.get().getOption("RunServer.mode"));
+    int maxRuns = Math.max(1, RunTime.get().getOptionNumber("RunServer.maxRuns", 1));
+    sharedImagePath = RunTime.get().isOption("RunServer.sharedImagePath", false);
+    if (maxRuns > 1 && !sharedImagePath) {
+      log(-1, "RunServer.maxRuns = %d: only with RunServer.sharedImagePath=yes (image path is process-wide)"
+              + " - using 1", maxRuns);
+      maxRuns = 1;
+    }
+    runGate = new Semaphore(maxRuns, true);
+    RunServerHTTP httpServer = null;
     try {
       try {
         if (port > 0) {
 					log(3, "Starting: trying port: %d %s", port, userArgs);
-          server = new ServerSocket(port);
+          if (useHTTP) {
+            httpServer = RunServerHTTP.create(port);
+          } else {
+            server = new ServerSocket(port);
+          }
         }
       } catch (Exception ex) {
         log(-1, "Starting: " + ex.getMessage());
       }
-      if (server == null) {
+      if (server == null && httpServer == null) {
         log(-1, "could not be started");
         return false;
       }
@@ -97,7 +114,17 @@ public class RunServer {
           }
         }
       });
-      while (true) {
+      Metrics.on();
+      ScriptEnginePool.poolSize = runGate.availablePermits();
+      ScriptEnginePool.recycleAfterRuns = RunTime.get().getOptionNumber("RunServer.recycleRuns", 50);
+      ScriptEnginePool.warmUp(RunTime.get().getOption("RunServer.warmup", "js"));
+      if (httpServer != null) {
+        log("HTTP mode: now serving on port: %d at %s (max parallel runs: %d)",
+                port, theIP, runGate.availablePermits());
+        isHandling = true;
+        httpServer.serve();
+      }
+      while (httpServer == null) {
         log("now waiting on port: %d at %s", port, theIP);
         Socket socket = server.accept();
         out = new PrintWriter(socket.getOutputStream());
@@ -125,6 +152,7 @@ public class RunServer {
       return false;
     }
     log("now stopped on port: " + port);
+    log("script engines: %s", ScriptEnginePool.getMetrics());
     return true;
   }
 
@@ -147,24 +175,66 @@ public class RunServer {
     return port;
   }
 
-  static ScriptEngine jsRunner = null;
-	static File scriptFolder = null;
-	static String scriptFolderNet = null;
-	static File imageFolder = null;
-	static String imageFolderNet = null;
+  /**
+   * the folders set by SCRIPTS and IMAGES and the JavaScript engine of START/EVAL for a client
+   * <br>socket mode: one session shared by all clients
+   * <br>HTTP mode: one session per client (see RunServerHTTP)
+   * <br>the image folder is only added to the image path for the runs of the session
+   */
+  static class Session {
+    File scriptFolder = null;
+    String scriptFolderNet = null;
+    File imageFolder = null;
+    String imageFolderNet = null;
+    ScriptEngine jsRunner = null;
+  }
+
+  static Session sharedSession = new Session();
+
+  /**
+   * limits the number of scripts running at the same time (RUN, EVAL) - the screens are shared
+   * <br>option RunServer.maxRuns (default 1): more than one run at a time only with maxRuns &gt; 1
+   * and RunServer.sharedImagePath=yes, since the image path and the bundle path are process-wide
+   * and the runs then see each other's image folders
+   * <br>only JavaScript runs go in parallel: Python scripts share the one interpreter and run one after the other
+   */
+  static Semaphore runGate = new Semaphore(1, true);
 
-  private static class HandleClient implements Runnable {
+  /**
+   * option RunServer.sharedImagePath (default no): IMAGES adds the folder to the process-wide image path
+   * for all clients (as before sessions), otherwise only for the runs of the session
+   */
+  static boolean sharedImagePath = false;
+
+  static class HandleClient implements Runnable {
 
     private volatile boolean keepRunning;
     private boolean shouldKeep = false;
     Thread thread;
     Socket socket;
     Boolean shouldStop = false;
+    Session session = sharedSession;
+    long queueWait = -1;
+    long runTime = -1;
+    int exitCode = -1;
+    private long runStart = 0;
+    // HTTP mode: time of the last request and number of requests running (guarded by RunServerHTTP)
+    long lastUsed = 0;
+    int inUse = 0;
 
     public HandleClient(Socket sock) {
       init(sock);
     }
 
+    /**
+     * a client without socket: the requests are given to processRequest()
+     *
+     * @param session the client's session
+     */
+    HandleClient(Session session) {
+      this.session = session;
+    }
+
     private void init(Socket sock) {
       socket = sock;
       if (in == null || out == null) {
@@ -225,157 +295,7 @@ public class RunServer {
             if (!isHTTP) {
               request = "GET /" + inLine + " HTTP/1.1";
             }
-            success = checkRequest(request);
-            if (success) {
-              // STOP
-              if (rCommand.contains("STOP")) {
-                rMessage = "stopping server";
-                shouldStop = true;
-                shouldKeep = false;
-              } else if (rCommand.contains("EXIT")) {
-                rMessage = "stopping client";
-                shouldKeep = false;
-              // START
-              } else if (rCommand.startsWith("START")) {
-                runType = runTypeJS;
-                if (rCommand.length() > 5) {
-                  if ("P".equals(rCommand.substring(5, 6))) {
-                    runType = runTypePY;
-                  } else if ("R".equals(rCommand.substring(5, 6))) {
-                    runType = runTypeRB;
-                  }
-                }
-                success = startRunner(runType, null, null);
-                rMessage = "startRunner for: " + runType;
-                if (!success) {
-                  rMessage = "startRunner: not possible for: " + runType;
-                  rStatus = rStatusServiceNotAvail;
-                }
-              // SCRIPTS
-              } else if (rCommand.startsWith("SCRIPTS")) {
-                if (rRessource.isEmpty()) {
-                  rMessage = "no scriptFolder given ";
-                  rStatus = rStatusBadRequest;
-                  success = false;
-                } else {
-                  scriptFolder = getFolder(rRessource);
-                  if (scriptFolder.getPath().startsWith("__NET/")) {
-                    scriptFolderNet = "http://" + scriptFolder.getPath().substring(6);
-                    rMessage = "scriptFolder now: " + scriptFolderNet;
-                  } else {
-                    scriptFolderNet = null;
-                    rMessage = "scriptFolder now: " + scriptFolder.getAbsolutePath();
-                    if (!scriptFolder.exists()) {
-                      rMessage = "scriptFolder not found: " + scriptFolder.getAbsolutePath();
-                      rStatus = rStatusNotFound;
-                      success = false;
-                    }
-                  }
-                }
-              // IMAGES
-              } else if (rCommand.startsWith("IMAGES")) {
-                String asImagePath;
-                if (rRessource.isEmpty()) {
-                  rMessage = "no imageFolder given ";
-                  rStatus = rStatusBadRequest;
-                  success = false;
-                } else {
-                  imageFolder = getFolder(rRessource);
-                  if (imageFolder.getPath().startsWith("__NET/")) {
-                    imageFolderNet = "http://" + imageFolder.getPath().substring(6);
-                    rMessage = "imageFolder now: " + imageFolderNet;
-                    asImagePath = imageFolderNet;
-                  } else {
-                    String fpGiven = imageFolder.getAbsolutePath();
-                    if (!imageFolder.exists()) {
-                      imageFolder = new File(imageFolder.getAbsolutePath() + ".sikuli");
-                      if (!imageFolder.exists()) {
-                        rMessage = "imageFolder not found: " + fpGiven;
-                        rStatus = rStatusNotFound;
-                        success = false;
-                      }
-                    }
-                    asImagePath = imageFolder.getAbsolutePath();
-                  }
-                  rMessage = "imageFolder now: " + asImagePath;
-                  ImagePath.add(asImagePath);
-                }
-                // RUN
-              } else if (rCommand.startsWith("RUN")) {
-                String script = rRessource;
-                File fScript = null;
-                File fScriptScript = null;
-                if (scriptFolderNet != null) {
-                  rMessage = "runScript from net not yet supported";
-                  rStatus = rStatusServiceNotAvail;
-                  success = false;
-                }
-                if (success) {
-                  Debug.log("Using script folder: " + RunServer.scriptFolder);
-                  fScript = new File(RunServer.scriptFolder, script);
-                  if (!fScript.exists()) {
-                    if (script.endsWith(".sikuli")) {
-                      script = script.replace(".sikuli", "");
-                    } else {
-                      script = script + ".sikuli";
-                    }
-                    fScript = new File(scriptFolder, script);
-                  }
-                  String scriptScript = script.replace(".sikuli", "");
-                  fScriptScript = new File(fScript, scriptScript + ".js");
-                  success = fScriptScript.exists();
-                  if (!success) {
-                    fScriptScript = new File(fScript, scriptScript + ".py");
-                    success = fScript.exists() && fScriptScript.exists();
-                    if (!success) {
-                      RunServer.log("Script folder path: " + fScript.getAbsolutePath());
-                      RunServer.log("Script file path: " + fScriptScript.getAbsolutePath());
-                      rMessage = "runScript: script not found, not valid or not supported "
-                              + fScriptScript.toString();
-                    }
-                    runType = runTypePY;
-                  }
-                }
-                if (success) {
-                  ImagePath.setBundlePath(fScript.getAbsolutePath());
-                  List<String> args = new ArrayList<String>();
-
-                  if (this.rQuery != null && this.rQuery.length() > 0) {
-                    String[] params = this.rQuery.split("[;&]");
-
-                    for (String param : params) {
-                      String[] pair = param.split("[=]");
-
-                      if (pair != null && pair.length == 2) {
-                        // Needs both a variable name and value, and supports repeated parameters
-                        String arg = String.format("--%1$s=%2$s", pair[0], pair[1]);
-
-                        args.add(arg);
-                      }
-                    }
-                  }
-
-                  success = this.startRunner(this.runType, fScript, fScriptScript, args.toArray(new String[0]));
-                }
-              } else if (rCommand.startsWith("EVAL")) {
-                if (jsRunner != null) {
-                  String line = rQuery;
-                  try {
-                    evalReturnObject = jsRunner.eval(line);
-                    rMessage = "runStatement: returned: "
-                            + (evalReturnObject == null ? "null" : evalReturnObject.toString());
-                    success = true;
-                  } catch (Exception ex) {
-                    rMessage = "runStatement: raised exception on eval: " + ex.toString();
-                    success = false;
-                  }
-                } else {
-                  rMessage = "runStatement: not possible --- no runner";
-                  rStatus = rStatusServiceNotAvail;
-                  success = false;
-                }
-              }
-            }
+            success = processRequest(request);
             String retVal = "";
             if (isHTTP) {
               retVal = "HTTP/1.1 " + rStatus;
@@ -407,6 +327,232 @@ public class RunServer {
       }
     }
 
+    /**
+     * evaluate the request (GET /COMMAND/ressource?query HTTP/1.1) and run the command
+     * <br>rStatus and rMessage contain the response afterwards
+     *
+     * @param request the request line
+     * @return success
+     */
+    boolean processRequest(String request) {
+      queueWait = -1;
+      runTime = -1;
+      exitCode = -1;
+      boolean success = checkRequest(request);
+      if (success) {
+        // STOP
+        if (rCommand.contains("STOP")) {
+          rMessage = "stopping server";
+          shouldStop = true;
+          shouldKeep = false;
+        } else if (rCommand.contains("EXIT")) {
+          rMessage = "stopping client";
+          shouldKeep = false;
+          if (session.jsRunner != null) {
+            ScriptEnginePool.releaseJS(session.jsRunner);
+            session.jsRunner = null;
+          }
+        // START
+        } else if (rCommand.startsWith("START")) {
+          runType = runTypeJS;
+          if (rCommand.length() > 5) {
+            if ("P".equals(rCommand.substring(5, 6))) {
+              runType = runTypePY;
+            } else if ("R".equals(rCommand.substring(5, 6))) {
+              runType = runTypeRB;
+            }
+          }
+          success = startRunner(runType, null, null);
+          rMessage = "startRunner for: " + runType;
+          if (!success) {
+            rMessage = "startRunner: not possible for: " + runType;
+            rStatus = rStatusServiceNotAvail;
+          }
+        // SCRIPTS
+        } else if (rCommand.startsWith("SCRIPTS")) {
+          if (rRessource.isEmpty()) {
+            rMessage = "no scriptFolder given ";
+            rStatus = rStatusBadRequest;
+            success = false;
+          } else {
+            session.scriptFolder = getFolder(rRessource);
+            if (session.scriptFolder.getPath().startsWith("__NET/")) {
+              session.scriptFolderNet = "http://" + session.scriptFolder.getPath().substring(6);
+              rMessage = "scriptFolder now: " + session.scriptFolderNet;
+            } else {
+              session.scriptFolderNet = null;
+              rMessage = "scriptFolder now: " + session.scriptFolder.getAbsolutePath();
+              if (!session.scriptFolder.exists()) {
+                rMessage = "scriptFolder not found: " + session.scriptFolder.getAbsolutePath();
+                rStatus = rStatusNotFound;
+                success = false;
+              }
+            }
+          }
+        // IMAGES
+        } else if (rCommand.startsWith("IMAGES")) {
+          String asImagePath;
+          if (rRessource.isEmpty()) {
+            rMessage = "no imageFolder given ";
+            rStatus = rStatusBadRequest;
+            success = false;
+          } else {
+            session.imageFolder = getFolder(rRessource);
+            if (session.imageFolder.getPath().startsWith("__NET/")) {
+              session.imageFolderNet = "http://" + session.imageFolder.getPath().substring(6);
+              rMessage = "imageFolder now: " + session.imageFolderNet;
+              asImagePath = session.imageFolderNet;
+            } else {
+              String fpGiven = session.imageFolder.getAbsolutePath();
+              if (!session.imageFolder.exists()) {
+                session.imageFolder = new File(session.imageFolder.getAbsolutePath() + ".sikuli");
+                if (!session.imageFolder.exists()) {
+                  rMessage = "imageFolder not found: " + fpGiven;
+                  rStatus = rStatusNotFound;
+                  success = false;
+                }
+              }
+              asImagePath = session.imageFolder.getAbsolutePath();
+            }
+            rMessage = "imageFolder now: " + asImagePath;
+            if (sharedImagePath) {
+              ImagePath.add(asImagePath);
+            }
+          }
+          // RUN
+        } else if (rCommand.startsWith("RUN")) {
+          String script = rRessource;
+          File fScript = null;
+          File fScriptScript = null;
+          if (session.scriptFolderNet != null) {
+            rMessage = "runScript from net not yet supported";
+            rStatus = rStatusServiceNotAvail;
+            success = false;
+          }
+          if (success) {
+            Debug.log("Using script folder: " + session.scriptFolder);
+            fScript = new File(session.scriptFolder, script);
+            if (!fScript.exists()) {
+              if (script.endsWith(".sikuli")) {
+                script = script.replace(".sikuli", "");
+              } else {
+                script = script + ".sikuli";
+              }
+              fScript = new File(session.scriptFolder, script);
+            }
+            String scriptScript = script.replace(".sikuli", "");
+            fScriptScript = new File(fScript, scriptScript + ".js");
+            success = fScriptScript.exists();
+            if (!success) {
+              fScriptScript = new File(fScript, scriptScript + ".py");
+              success = fScript.exists() && fScriptScript.exists();
+              if (!success) {
+                RunServer.log("Script folder path: " + fScript.getAbsolutePath());
+                RunServer.log("Script file path: " + fScriptScript.getAbsolutePath());
+                rMessage = "runScript: script not found, not valid or not supported "
+                        + fScriptScript.toString();
+              }
+              runType = runTypePY;
+            }
+          }
+          if (success) {
+            List<String> args = new ArrayList<String>();
+
+            if (this.rQuery != null && this.rQuery.length() > 0) {
+              String[] params = this.rQuery.split("[;&]");
+
+              for (String param : params) {
+                String[] pair = param.split("[=]");
+
+                if (pair != null && pair.length == 2) {
+                  // Needs both a variable name and value, and supports repeated parameters
+                  String arg = String.format("--%1$s=%2$s", pair[0], pair[1]);
+
+                  args.add(arg);
+                }
+              }
+            }
+
+            success = acquireRun();
+            if (success) {
+              List<ImagePath.PathEntry> imagePaths = applySession();
+              try {
+                ImagePath.setBundlePath(fScript.getAbsolutePath());
+                success = this.startRunner(this.runType, fScript, fScriptScript, args.toArray(new String[0]));
+              } finally {
+                restoreSession(imagePaths);
+                releaseRun();
+              }
+            }
+          }
+        } else if (rCommand.startsWith("EVAL")) {
+          if (session.jsRunner != null) {
+            String line = rQuery;
+            success = acquireRun();
+            if (success) {
+              List<ImagePath.PathEntry> imagePaths = applySession();
+              try {
+                evalReturnObject = session.jsRunner.eval(line);
+                rMessage = "runStatement: returned: "
+                        + (evalReturnObject == null ? "null" : evalReturnObject.toString());
+              } catch (Exception ex) {
+                rMessage = "runStatement: raised exception on eval: " + ex.toString();
+                success = false;
+              } finally {
+                restoreSession(imagePaths);
+                releaseRun();
+              }
+            }
+          } else {
+            rMessage = "runStatement: not possible --- no runner";
+            rStatus = rStatusServiceNotAvail;
+            success = false;
+          }
+        }
+      }
+      return success;
+    }
+
+    // the image folder of the session for a run (under the run gate): returns the image path to restore
+    private List<ImagePath.PathEntry> applySession() {
+      if (sharedImagePath) {
+        return null;
+      }
+      List<ImagePath.PathEntry> imagePaths = new ArrayList<ImagePath.PathEntry>(ImagePath.getPaths());
+      if (session.imageFolderNet != null) {
+        ImagePath.add(session.imageFolderNet);
+      } else if (session.imageFolder != null) {
+        ImagePath.add(session.imageFolder.getAbsolutePath());
+      }
+      return imagePaths;
+    }
+
+    private void restoreSession(List<ImagePath.PathEntry> imagePaths) {
+      if (imagePaths != null) {
+        Runner.restoreImagePath(imagePaths);
+      }
+    }
+
+    private boolean acquireRun() {
+      long start = System.currentTimeMillis();
+      try {
+        runGate.acquire();
+      } catch (InterruptedException ex) {
+        rMessage = "interrupted while waiting for other runs to finish";
+        rStatus = rStatusServiceNotAvail;
+        return false;
+      }
+      runStart = System.currentTimeMillis();
+      queueWait = runStart - start;
+      return true;
+    }
+
+    private void releaseRun() {
+      runTime = System.currentTimeMillis() - runStart;
+      runGate.release();
+      RunServer.log("%s: waited %d msec, ran %d msec", rCommand, queueWait, runTime);
+    }
+
     public void stopRunning() {
       if (!shouldKeep) {
         in.close();
@@ -484,43 +630,50 @@ public class RunServer {
 
     private boolean startRunner(String runType, File fScript, File fScriptScript, String[] args) {
       if (runTypeJS.equals(runType)) {
-        if (jsRunner == null) {
-          try {
-            jsRunner = Runner.initjs();
-            String prolog = "";
-            prolog = Runner.prologjs(prolog);
-            prolog = Runner.prologjs(prolog);
-            jsRunner.eval(prolog);
-          } catch (Exception ex) {
+        if (fScript == null) {
+          // the engine used by EVAL
+          if (session.jsRunner == null) {
+            session.jsRunner = ScriptEnginePool.leaseJS();
+          }
+          if (session.jsRunner == null) {
             rMessage = "startRunner JavaScript: not possible";
             rStatus = rStatusServiceNotAvail;
             return false;
           }
-        }
-        if (fScript == null) {
           return true;
         }
-        if (jsRunner != null) {
-          try {
-            evalReturnObject = jsRunner.eval(new java.io.FileReader(fScriptScript));
-            rMessage = "runScript: returned: "
-                    + (evalReturnObject == null ? "null" : evalReturnObject.toString());
-            return evalReturnObject != null;
-          } catch (Exception ex) {
-            rMessage = "runScript: script raised exception on run: " + ex.toString();
-            return false;
-          }
-        } else {
+        ScriptEngine engine = ScriptEnginePool.leaseJS();
+        if (engine == null) {
+          rMessage = "startRunner JavaScript: not possible";
+          rStatus = rStatusServiceNotAvail;
           return false;
         }
+        try {
+          evalReturnObject = engine.eval(new java.io.FileReader(fScriptScript));
+          rMessage = "runScript: returned: "
+                  + (evalReturnObject == null ? "null" : evalReturnObject.toString());
+          exitCode = evalReturnObject == null ? 1 : 0;
+          return evalReturnObject != null;
+        } catch (Exception ex) {
+          rMessage = "runScript: script raised exception on run: " + ex.toString();
+          exitCode = 1;
+          return false;
+        } finally {
+          ScriptEnginePool.releaseJS(engine);
+        }
       } else if (runTypePY.equals(runType)) {
         Integer retval = 0;
-        if (!Runner.initpy()) {
+        // a script has the interpreter for itself: a Python run waits for the one running
+        if (fScript != null ? !ScriptEnginePool.leasePythonRun() : !ScriptEnginePool.leasePython()) {
           retval = -1;
         }
         if (fScript != null && retval == 0) {
           // Arguments are passed to Python in the long format: --name=value
-          evalReturnObject = Runner.run(fScript.getAbsolutePath(), args);
+          try {
+            evalReturnObject = Runner.run(fScript.getAbsolutePath(), args);
+          } finally {
+            ScriptEnginePool.releasePython();
+          }
           try {
             retval = Integer.parseInt(evalReturnObject.toString());
             if (retval == -999) {
@@ -531,12 +684,16 @@ public class RunServer {
           }
         }
         if (retval < 0) {
+          if (fScript != null) {
+            exitCode = retval;
+          }
           rMessage = "startRunner Python: not possible or crashed with exception";
           rStatus = rStatusServiceNotAvail;
           return false;
         }
         if (fScript != null) {
           rMessage = "runScript: returned: " + retval.toString();
+          exitCode = retval;
         }
       }
       return true;
@@ -0,0 +1,450 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.script;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * EXPERIMENTAL --- NOT official API<br>
+ * the HTTP mode of the RunServer (option RunServer.mode=http or RunServer.run(new String[]{port, "http"}))
+ * <p>
+ * based on the HTTP server of the JRE: many clients at the same time, keep-alive connections<br>
+ * the commands are the same as with the socket mode: GET /COMMAND/ressource?query<br>
+ * each client has its own session (SCRIPTS, IMAGES, the JavaScript engine of START/EVAL),
+ * identified by the request header X-SikuliX-Session, if not given by the client's host address<br>
+ * a session is dropped (with its JavaScript engine) after EXIT or when idle longer than
+ * option RunServer.sessionIdle (seconds, default 600); at most RunServer.maxSessions sessions (default 100):
+ * a new one replaces the longest idle one, if all are busy the answer is 503<br>
+ * RUN and EVAL wait for a free slot (option RunServer.maxRuns, default 1: the screens are shared,
+ * more only with RunServer.sharedImagePath=yes, and only JavaScript: Python runs one after the other)<br>
+ * the response contains the time waited for a slot and the time of the run in msec
+ * (headers X-SikuliX-QueueWait and X-SikuliX-RunTime)
+ * <p>
+ * streaming: GET /STREAM/COMMAND/... answers with server-sent events (text/event-stream) while the command runs:<br>
+ * event log: each log line of the run (Debug)<br>
+ * event find: image, found, msec for each search<br>
+ * event findfailed: image, region and the file of a screenshot of the region<br>
+ * event result (last): success, status, exitCode, message, queueWait, runTime, failedFind, screenshots (JSON)
+ * <p>
+ * GET /METRICS answers with the find metrics (Metrics) in the Prometheus text format
+ */
+public class RunServerHTTP implements HttpHandler {
+
+  private static void log(int lvl, String message, Object... args) {
+    if (lvl < 0) {
+      System.out.println("[error] " + String.format("RunServerHTTP: " + message, args));
+    } else {
+      System.out.println("[info] " + String.format("RunServerHTTP: " + message, args));
+    }
+  }
+
+  public static final String SESSION_HEADER = "X-SikuliX-Session";
+  public static final String STREAM_PREFIX = "/STREAM/";
+  public static final String METRICS_PATH = "/METRICS";
+
+  private HttpServer server;
+  private ExecutorService executor;
+  private final CountDownLatch stopped = new CountDownLatch(1);
+  private final ConcurrentHashMap<String, RunServer.HandleClient> sessions = new ConcurrentHashMap<>();
+  private long sessionIdle = 600000;
+  private int maxSessions = 100;
+
+  private final AtomicLong countRequests = new AtomicLong();
+  private final AtomicLong countRuns = new AtomicLong();
+  private final AtomicLong sumQueueWait = new AtomicLong();
+  private final AtomicLong sumRunTime = new AtomicLong();
+
+  private RunServerHTTP() {
+  }
+
+  /**
+   * binds the server to the port (not yet serving)
+   *
+   * @param port the port
+   * @return the server
+   * @throws IOException if the port cannot be used
+   */
+  static RunServerHTTP create(int port) throws IOException {
+    RunServerHTTP runServer = new RunServerHTTP();
+    runServer.server = HttpServer.create(new InetSocketAddress(port), 0);
+    runServer.server.createContext("/", runServer);
+    runServer.sessionIdle = 1000L * Math.max(1, RunTime.get().getOptionNumber("RunServer.sessionIdle", 600));
+    runServer.maxSessions = Math.max(1, RunTime.get().getOptionNumber("RunServer.maxSessions", 100));
+    final AtomicInteger threadNumber = new AtomicInteger();
+    runServer.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "RunServerHTTP-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    runServer.server.setExecutor(runServer.executor);
+    return runServer;
+  }
+
+  /**
+   * serve the requests until a client sends STOP
+   */
+  void serve() {
+    server.start();
+    try {
+      stopped.await();
+    } catch (InterruptedException e) {
+    }
+    server.stop(1);
+    executor.shutdown();
+    log(0, "stopped: %s", getMetrics());
+  }
+
+  /**
+   * @return number of requests, runs and the average queue wait and run time
+   */
+  public String getMetrics() {
+    long runs = countRuns.get();
+    return String.format("requests: %d runs: %d avg queue wait: %d msec avg run time: %d msec",
+            countRequests.get(), runs,
+            runs == 0 ? 0 : sumQueueWait.get() / runs, runs == 0 ? 0 : sumRunTime.get() / runs);
+  }
+
+  private String getSessionKey(HttpExchange exchange) {
+    String key = exchange.getRequestHeaders().getFirst(SESSION_HEADER);
+    if (key == null || key.isEmpty()) {
+      key = exchange.getRemoteAddress().getAddress().getHostAddress();
+    }
+    return key;
+  }
+
+  // the session of the key (new if needed) marked as in use - null if there are too many sessions
+  private RunServer.HandleClient leaseSession(String key) {
+    List<RunServer.HandleClient> expired = new ArrayList<RunServer.HandleClient>();
+    RunServer.HandleClient client;
+    synchronized (sessions) {
+      long now = System.currentTimeMillis();
+      client = sessions.get(key);
+      String oldest = null;
+      long oldestUsed = now;
+      for (String other : new ArrayList<String>(sessions.keySet())) {
+        RunServer.HandleClient session = sessions.get(other);
+        if (session == client || session.inUse > 0) {
+          continue;
+        }
+        if (now - session.lastUsed > sessionIdle) {
+          sessions.remove(other);
+          expired.add(session);
+          log(0, "session expired: %s", other);
+        } else if (oldest == null || session.lastUsed < oldestUsed) {
+          oldest = other;
+          oldestUsed = session.lastUsed;
+        }
+      }
+      if (client == null) {
+        if (sessions.size() >= maxSessions) {
+          if (oldest == null) {
+            log(-1, "too many sessions (RunServer.maxSessions = %d): %s", maxSessions, key);
+          } else {
+            expired.add(sessions.remove(oldest));
+            log(0, "session dropped (RunServer.maxSessions = %d): %s", maxSessions, oldest);
+          }
+        }
+        if (sessions.size() < maxSessions) {
+          client = new RunServer.HandleClient(new RunServer.Session());
+          sessions.put(key, client);
+          log(0, "new session: %s", key);
+        }
+      }
+      if (client != null) {
+        client.inUse++;
+        client.lastUsed = now;
+      }
+    }
+    for (RunServer.HandleClient session : expired) {
+      synchronized (session) {
+        if (session.session.jsRunner != null) {
+          ScriptEnginePool.releaseJS(session.session.jsRunner);
+          session.session.jsRunner = null;
+        }
+      }
+    }
+    return client;
+  }
+
+  private void releaseSession(RunServer.HandleClient client) {
+    synchronized (sessions) {
+      client.inUse--;
+      client.lastUsed = System.currentTimeMillis();
+    }
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    countRequests.incrementAndGet();
+    String path = exchange.getRequestURI().getRawPath();
+    if (METRICS_PATH.equalsIgnoreCase(path)) {
+      handleMetrics(exchange);
+      return;
+    }
+    boolean streaming = path.toUpperCase().startsWith(STREAM_PREFIX);
+    if (streaming) {
+      path = path.substring(STREAM_PREFIX.length() - 1);
+    }
+    String request = exchange.getRequestMethod() + " " + path;
+    String query = exchange.getRequestURI().getRawQuery();
+    if (query != null) {
+      request += "?" + query;
+    }
+    request += " HTTP/1.1";
+    String sessionKey = getSessionKey(exchange);
+    RunServer.HandleClient client = leaseSession(sessionKey);
+    if (client == null) {
+      byte[] body = "FAIL 503 too many sessions".getBytes("UTF-8");
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+      exchange.sendResponseHeaders(503, body.length);
+      OutputStream out = exchange.getResponseBody();
+      out.write(body);
+      out.close();
+      return;
+    }
+    try {
+      if (streaming) {
+        handleStream(exchange, request, sessionKey, client);
+      } else {
+        handleRequest(exchange, request, sessionKey, client);
+      }
+    } finally {
+      releaseSession(client);
+    }
+  }
+
+  private void handleRequest(HttpExchange exchange, String request, String sessionKey,
+                             RunServer.HandleClient client) throws IOException {
+    boolean success;
+    String status;
+    String message;
+    long queueWait;
+    long runTime;
+    boolean shouldStop;
+    boolean shouldClose;
+    synchronized (client) {
+      success = client.processRequest(request);
+      status = client.rStatus;
+      message = client.rMessage;
+      queueWait = client.queueWait;
+      runTime = client.runTime;
+      shouldStop = client.shouldStop;
+      shouldClose = "EXIT".equals(client.rCommand);
+    }
+    if (runTime > -1) {
+      countRuns.incrementAndGet();
+      sumQueueWait.addAndGet(queueWait);
+      sumRunTime.addAndGet(runTime);
+    }
+    int code = 500;
+    try {
+      code = Integer.parseInt(status.substring(0, 3));
+    } catch (Exception ex) {
+    }
+    String response = (success ? "PASS " : "FAIL ") + code + " " + message;
+    byte[] body = response.getBytes("UTF-8");
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    if (runTime > -1) {
+      exchange.getResponseHeaders().set("X-SikuliX-QueueWait", Long.toString(queueWait));
+      exchange.getResponseHeaders().set("X-SikuliX-RunTime", Long.toString(runTime));
+    }
+    if (shouldClose || shouldStop) {
+      exchange.getResponseHeaders().set("Connection", "close");
+    }
+    exchange.sendResponseHeaders(code, body.length);
+    OutputStream out = exchange.getResponseBody();
+    out.write(body);
+    out.close();
+    log(0, "%s (%s): %s", request, sessionKey, response);
+    if (shouldClose) {
+      synchronized (sessions) {
+        sessions.remove(sessionKey, client);
+      }
+    }
+    if (shouldStop) {
+      stopped.countDown();
+    }
+  }
+
+  private void handleMetrics(HttpExchange exchange) throws IOException {
+    byte[] body = Metrics.toPrometheus().getBytes("UTF-8");
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+    exchange.sendResponseHeaders(200, body.length);
+    OutputStream out = exchange.getResponseBody();
+    out.write(body);
+    out.close();
+  }
+
+  private void handleStream(HttpExchange exchange, String request, String sessionKey,
+                            RunServer.HandleClient client) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+    exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+    exchange.sendResponseHeaders(200, 0);
+    OutputStream out = exchange.getResponseBody();
+    EventStream stream = new EventStream(out);
+    StringBuilder result = new StringBuilder("{");
+    synchronized (client) {
+      Debug.setListener(stream);
+      boolean success;
+      try {
+        success = client.processRequest(request);
+      } finally {
+        Debug.setListener(null);
+      }
+      if (client.runTime > -1) {
+        countRuns.incrementAndGet();
+        sumQueueWait.addAndGet(client.queueWait);
+        sumRunTime.addAndGet(client.runTime);
+      }
+      result.append("\"success\":").append(success);
+      result.append(",\"status\":").append(toJSON(client.rStatus));
+      result.append(",\"exitCode\":").append(client.exitCode);
+      result.append(",\"message\":").append(toJSON(client.rMessage));
+      result.append(",\"queueWait\":").append(client.queueWait);
+      result.append(",\"runTime\":").append(client.runTime);
+      if (client.shouldStop) {
+        stopped.countDown();
+      }
+    }
+    result.append(",\"failedFind\":").append(stream.failedFind == null ? "null" : stream.failedFind);
+    result.append(",\"screenshots\":[");
+    String sep = "";
+    for (String screenshot : stream.screenshots) {
+      result.append(sep).append(toJSON(screenshot));
+      sep = ",";
+    }
+    result.append("]}");
+    stream.send("result", result.toString());
+    out.close();
+    log(0, "%s (%s): streamed: %s", request, sessionKey, result);
+  }
+
+  /**
+   * forwards the log lines and events of a run as server-sent events - nothing is kept in memory
+   */
+  private static class EventStream implements Debug.Listener {
+
+    private OutputStream out;
+    private boolean broken = false;
+    String failedFind = null;
+    List<String> screenshots = new ArrayList<>();
+
+    EventStream(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void log(String line) {
+      send("log", line);
+    }
+
+    @Override
+    public void event(String type, Object... values) {
+      StringBuilder json = new StringBuilder("{");
+      String sep = "";
+      for (int n = 0; n + 1 < values.length; n += 2) {
+        Object value = values[n + 1];
+        if (value instanceof Region) {
+          Region region = (Region) value;
+          json.append(sep).append(toJSON("" + values[n])).append(":").append(toJSON(region.toStringShort()));
+          sep = ",";
+          if ("findfailed".equals(type)) {
+            String screenshot = saveScreenshot(region);
+            if (screenshot != null) {
+              json.append(",\"screenshot\":").append(toJSON(screenshot));
+            }
+          }
+          continue;
+        }
+        json.append(sep).append(toJSON("" + values[n])).append(":");
+        if (value instanceof Number || value instanceof Boolean) {
+          json.append(value);
+        } else {
+          json.append(toJSON("" + value));
+        }
+        sep = ",";
+      }
+      json.append("}");
+      if ("findfailed".equals(type)) {
+        failedFind = json.toString();
+      }
+      send(type, json.toString());
+    }
+
+    private String saveScreenshot(Region region) {
+      try {
+        File folder = new File(RunTime.get().fSikulixStore, "RunServer/screenshots");
+        folder.mkdirs();
+        String screenshot = region.getScreen().capture(region).save(folder.getAbsolutePath(), "findfailed");
+        synchronized (this) {
+          screenshots.add(screenshot);
+        }
+        return screenshot;
+      } catch (Exception ex) {
+        return null;
+      }
+    }
+
+    synchronized void send(String event, String data) {
+      if (broken) {
+        return;
+      }
+      StringBuilder message = new StringBuilder("event: ").append(event).append("\n");
+      for (String line : data.split("\n")) {
+        message.append("data: ").append(line).append("\n");
+      }
+      message.append("\n");
+      try {
+        out.write(message.toString().getBytes("UTF-8"));
+        out.flush();
+      } catch (IOException ex) {
+        broken = true;
+      }
+    }
+  }
+
+  static String toJSON(String text) {
+    if (text == null) {
+      return "null";
+    }
+    StringBuilder json = new StringBuilder("\"");
+    for (char c : text.toCharArray()) {
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c == '\n') {
+        json.append("\\n");
+      } else if (c == '\r') {
+        json.append("\\r");
+      } else if (c == '\t') {
+        json.append("\\t");
+      } else if (c < 0x20) {
+        json.append(String.format("\\u%04x", (int) c));
+      } else {
+        json.append(c);
+      }
+    }
+    return json.append("\"").toString();
+  }
+}
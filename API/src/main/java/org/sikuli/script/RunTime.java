@@ -5,6 +5,7 @@ package org.sikuli.script;
 
 import org.sikuli.basics.Debug;
 import org.sikuli.basics.FileManager;
+import org.sikuli.basics.Profiler;
 import org.sikuli.basics.Settings;
 import org.sikuli.util.JythonHelper;
 import org.sikuli.util.LinuxSupport;
@@ -488,6 +489,9 @@ public class RunTime {
       public void run() {
         isTerminating = true;
         log(lvl, "final cleanup");
+        if (Settings.FindProfiling) {
+          Profiler.logSummary();
+        }
         if (isRunning != null) {
           try {
             isRunningFile.close();
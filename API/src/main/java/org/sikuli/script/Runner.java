@@ -18,8 +18,10 @@ import java.io.File;
 import java.io.FileReader;
 import java.lang.reflect.Method;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -186,36 +188,100 @@ public class Runner {
 
   public static int runScripts(String[] args) {
     runScripts = Runner.evalArgs(args);
-    String someJS = "";
-    int exitCode = 0;
     if (runScripts != null && runScripts.length > 0) {
-      boolean runAsTest = runTime.runningTests;
-      for (String givenScriptName : runScripts) {
-        if (lastReturnCode == -1) {
-          log(lvl, "Exit code -1: Terminating multi-script-run");
-          break;
-        }
-        someJS = runTime.getOption("runsetup", "");
-        if (!someJS.isEmpty()) {
-          log(lvl, "Options.runsetup: %s", someJS);
-          new RunBox().runjs(null, null, someJS, null);
-        }
-        RunBox rb = new RunBox(givenScriptName, runTime.getArgs(), runAsTest);
-        exitCode = rb.run();
-        someJS = runTime.getOption("runteardown", "");
-        if (!someJS.isEmpty()) {
-          log(lvl, "Options.runteardown: %s", someJS);
-          new RunBox().runjs(null, null, someJS, null);
-        }
-        if (exitCode == -999) {
-          exitCode = lastReturnCode;
-        }
-        lastReturnCode = exitCode;
+      int workers = runTime.getOptionNumber("runparallel", 0);
+      if (workers > 1 && runScripts.length > 1 && !runTime.runningTests) {
+        return ParallelRunner.run(runScripts, runTime.getArgs(), workers);
       }
+      return runAll(runScripts, runTime.getArgs(), runTime.runningTests);
+    }
+    return 0;
+  }
+
+  /**
+   * run the scripts one after the other (as given with the command line option -r)
+   * <br>with the options runsetup and runteardown: JavaScript evaluated before and after each script
+   * <p>
+   * option runsession (default no - as before: the scripts share the interpreters and their state):
+   * the interpreters are initialized only once for all scripts,
+   * after each script only its state is removed (fast compared to a new interpreter):
+   * Python - the globals, sys.path and the modules imported from outside the Jython library,
+   * JavaScript - the global scope (the SikuliX prolog is evaluated again),
+   * the image path entries added by the script
+   * <p>
+   * with option runparallel (number of workers, Linux) runScripts uses ParallelRunner instead:
+   * the scripts run in parallel, each worker in its own JVM on its own X display
+   *
+   * @param scripts script names (as for run())
+   * @param args the arguments given to each script
+   * @param runAsTest run as test
+   * @return the exit code of the last script
+   */
+  public static int runAll(String[] scripts, String[] args, boolean runAsTest) {
+    String someJS;
+    int exitCode = 0;
+    boolean session = runTime.isOption("runsession", false);
+    long startAll = System.currentTimeMillis();
+    int runs = 0;
+    for (String givenScriptName : scripts) {
+      if (lastReturnCode == -1) {
+        log(lvl, "Exit code -1: Terminating multi-script-run");
+        break;
+      }
+      long start = System.currentTimeMillis();
+      List<ImagePath.PathEntry> imagePaths = new ArrayList<ImagePath.PathEntry>(ImagePath.getPaths());
+      someJS = runTime.getOption("runsetup", "");
+      if (!someJS.isEmpty()) {
+        log(lvl, "Options.runsetup: %s", someJS);
+        new RunBox().runjs(null, null, someJS, null);
+      }
+      RunBox rb = new RunBox(givenScriptName, args, runAsTest);
+      exitCode = rb.run();
+      someJS = runTime.getOption("runteardown", "");
+      if (!someJS.isEmpty()) {
+        log(lvl, "Options.runteardown: %s", someJS);
+        new RunBox().runjs(null, null, someJS, null);
+      }
+      if (exitCode == -999) {
+        exitCode = lastReturnCode;
+      }
+      lastReturnCode = exitCode;
+      if (session) {
+        endSessionRun(imagePaths);
+      }
+      runs++;
+      log(lvl, "runAll: %s: returned %d (%d msec)", givenScriptName, exitCode, System.currentTimeMillis() - start);
+    }
+    if (session) {
+      log(lvl, "runAll: session: %d scripts (%d msec) - %s",
+              runs, System.currentTimeMillis() - startAll, ScriptEnginePool.getMetrics());
     }
     return exitCode;
   }
 
+  // remove the state of the last script: the interpreters are kept
+  private static void endSessionRun(List<ImagePath.PathEntry> imagePaths) {
+    ScriptEnginePool.releasePython();
+    if (jsRunner != null) {
+      ScriptEnginePool.resetJS(jsRunner);
+    }
+    restoreImagePath(imagePaths);
+  }
+
+  // back to the image path saved before a run: added entries are removed, the bundle path is restored
+  static void restoreImagePath(List<ImagePath.PathEntry> imagePaths) {
+    List<ImagePath.PathEntry> paths = ImagePath.getPaths();
+    for (ImagePath.PathEntry entry : new ArrayList<ImagePath.PathEntry>(paths.subList(1, paths.size()))) {
+      if (entry != null && !imagePaths.contains(entry)) {
+        ImagePath.remove(entry.getPath());
+      }
+    }
+    ImagePath.PathEntry bundle = imagePaths.isEmpty() ? null : imagePaths.get(0);
+    if (bundle != null && !bundle.equals(paths.get(0))) {
+      ImagePath.setBundlePath(bundle.getPath());
+    }
+  }
+
   public static File getScriptFile(File fScriptFolder) {
     if (fScriptFolder == null) {
       return null;
@@ -254,6 +320,7 @@ public class Runner {
       pyRunner.exec("# -*- coding: utf-8 -*- ");
       pyRunner.exec("import org.sikuli.script.SikulixForJython");
       pyRunner.exec("from sikuli import *");
+      ScriptEnginePool.preparePython();
     }
     return true;
   }
@@ -6,6 +6,7 @@ package org.sikuli.script;
 import java.awt.*;
 import java.util.Date;
 import org.sikuli.basics.Debug;
+import org.sikuli.basics.Profiler;
 import org.sikuli.basics.Settings;
 import org.sikuli.util.EventObserver;
 import org.sikuli.util.OverlayCapturePrompt;
@@ -531,6 +532,8 @@ public class Screen extends Region implements IScreen {
     return robot.captureScreen(new Rectangle(x, y, w, h));
   }
 
+  private static final Profiler.Timer tCapture = Profiler.timer("Screen.capture");
+
   /**
    * create a ScreenImage with given rectangle on this screen.
    *
@@ -540,11 +543,9 @@ public class Screen extends Region implements IScreen {
   @Override
   public ScreenImage capture(Rectangle rect) {
     lastCaptureTime = new Date().getTime();
+    long start = Profiler.start();
     ScreenImage simg = robot.captureScreen(rect);
-    if (Settings.FindProfiling) {
-      Debug.logp("[FindProfiling] Screen.capture [%d x %d]: %d msec",
-              rect.width, rect.height, new Date().getTime() - lastCaptureTime);
-    }
+    tCapture.stop(start);
     lastScreenImage = simg;
     if (Debug.getDebugLevel() > lvl) {
       simg.saveLastScreenImage(runTime.fSikulixStore);
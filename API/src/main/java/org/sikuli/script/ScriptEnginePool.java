@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.script;
+
+import org.sikuli.basics.Debug;
+
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * INTERNAL USE --- NOT official API<br>
+ * keeps pre-initialized script engines, so a run does not have to pay the interpreter startup
+ * <p>
+ * JavaScript: up to poolSize engines with the SikuliX prolog already evaluated (leased ones count).
+ * After a run the engine gets a fresh global scope with the prolog again and goes back to the pool,
+ * after recycleAfterRuns runs it is dropped and replaced by a new one (in the background).<br>
+ * Python: there is only one interpreter (JythonHelper), it is initialized once (from sikuli import *)
+ * and after each run the globals, sys.path and the modules imported from outside the Jython library
+ * are reset to the state after the initialization (also used by Runner.runAll).
+ * So Python runs are done one after the other (leasePythonRun/releasePython), only JavaScript runs in parallel.
+ * <p>
+ * getMetrics() compares the time to get a cold engine with the time to get a warm one
+ */
+public class ScriptEnginePool {
+
+  static final String me = "ScriptEnginePool: ";
+  static final int lvl = 3;
+
+  static void log(int level, String message, Object... args) {
+    Debug.logx(level, me + message, args);
+  }
+
+  /**
+   * number of JavaScript engines kept (idle and leased)
+   */
+  public static int poolSize = 1;
+
+  /**
+   * an engine is replaced after that many runs
+   */
+  public static int recycleAfterRuns = 50;
+
+  private static final LinkedList<ScriptEngine> jsIdle = new LinkedList<>();
+  // all engines of the pool (idle and leased) with their number of runs
+  private static final Map<ScriptEngine, Integer> jsRuns = new IdentityHashMap<>();
+  private static String jsProlog = null;
+  private static boolean refilling = false;
+
+  private static volatile boolean pyReady = false;
+  // held from leasePythonRun until releasePython: the runs share the one interpreter
+  private static final ReentrantLock pyLock = new ReentrantLock(true);
+  private static int pyRuns = 0;
+
+  private static long countCold = 0;
+  private static long timeCold = 0;
+  private static long countWarm = 0;
+  private static long timeWarm = 0;
+
+  private ScriptEnginePool() {
+  }
+
+  /**
+   * prepare engines in the background
+   *
+   * @param languages comma separated list containing js and/or py
+   */
+  public static void warmUp(String languages) {
+    final boolean withJS = languages.toLowerCase().contains("js");
+    final boolean withPY = languages.toLowerCase().contains("py");
+    if (!withJS && !withPY) {
+      return;
+    }
+    new Thread("ScriptEnginePoolWarmUp") {
+      @Override
+      public void run() {
+        if (withPY) {
+          long start = System.currentTimeMillis();
+          if (preparePython()) {
+            log(lvl, "warmUp: Python ready (%d msec)", System.currentTimeMillis() - start);
+          }
+        }
+        if (withJS) {
+          refillJS();
+        }
+      }
+    }.start();
+  }
+
+  //<editor-fold desc="JavaScript">
+  private static String getPrologJS() {
+    if (jsProlog == null) {
+      String prolog = Runner.prologjs("");
+      jsProlog = Runner.prologjs(prolog);
+    }
+    return jsProlog;
+  }
+
+  private static ScriptEngine createJS() {
+    ScriptEngine engine = Runner.initjs();
+    if (engine == null) {
+      return null;
+    }
+    try {
+      engine.eval(getPrologJS());
+    } catch (Exception ex) {
+      log(-1, "createJS: prolog: %s", ex);
+      return null;
+    }
+    return engine;
+  }
+
+  private static void refillJS() {
+    synchronized (jsIdle) {
+      if (refilling) {
+        return;
+      }
+      refilling = true;
+    }
+    try {
+      while (true) {
+        synchronized (jsIdle) {
+          if (jsRuns.size() >= poolSize) {
+            break;
+          }
+        }
+        ScriptEngine engine = createJS();
+        if (engine == null) {
+          break;
+        }
+        synchronized (jsIdle) {
+          jsIdle.add(engine);
+          jsRuns.put(engine, 0);
+        }
+        log(lvl + 1, "refillJS: new warm engine");
+      }
+    } finally {
+      synchronized (jsIdle) {
+        refilling = false;
+      }
+    }
+  }
+
+  private static void refillJSBackground() {
+    new Thread("ScriptEnginePoolRefill") {
+      @Override
+      public void run() {
+        refillJS();
+      }
+    }.start();
+  }
+
+  /**
+   * get a JavaScript engine with the SikuliX prolog evaluated - a warm one if available
+   *
+   * @return the engine or null if not possible
+   */
+  public static ScriptEngine leaseJS() {
+    long start = System.nanoTime();
+    ScriptEngine engine = null;
+    synchronized (jsIdle) {
+      if (!jsIdle.isEmpty()) {
+        engine = jsIdle.removeFirst();
+      }
+    }
+    if (engine != null) {
+      recordLease(false, System.nanoTime() - start);
+    } else {
+      engine = createJS();
+      if (engine == null) {
+        return null;
+      }
+      synchronized (jsIdle) {
+        jsRuns.put(engine, 0);
+      }
+      recordLease(true, System.nanoTime() - start);
+    }
+    return engine;
+  }
+
+  /**
+   * give the engine back after a run: it is reset and kept if there is room in the pool
+   *
+   * @param engine the engine got with leaseJS()
+   */
+  public static void releaseJS(ScriptEngine engine) {
+    if (engine == null) {
+      return;
+    }
+    int runs;
+    synchronized (jsIdle) {
+      Integer count = jsRuns.get(engine);
+      runs = (count == null ? 0 : count) + 1;
+      if (runs >= recycleAfterRuns || jsIdle.size() >= poolSize) {
+        jsRuns.remove(engine);
+        log(lvl + 1, "releaseJS: engine dropped after %d runs", runs);
+        if (runs >= recycleAfterRuns) {
+          refillJSBackground();
+        }
+        return;
+      }
+      jsRuns.put(engine, runs);
+    }
+    if (!resetJS(engine)) {
+      synchronized (jsIdle) {
+        jsRuns.remove(engine);
+      }
+      refillJSBackground();
+      return;
+    }
+    synchronized (jsIdle) {
+      jsIdle.add(engine);
+    }
+  }
+
+  /**
+   * a fresh global scope with the SikuliX prolog evaluated again
+   *
+   * @param engine a JavaScript engine
+   * @return false if not possible (the engine should not be used again)
+   */
+  public static boolean resetJS(ScriptEngine engine) {
+    try {
+      engine.setBindings(engine.createBindings(), ScriptContext.ENGINE_SCOPE);
+      engine.eval(getPrologJS());
+    } catch (Exception ex) {
+      log(-1, "resetJS: not possible: %s", ex);
+      return false;
+    }
+    return true;
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="Python">
+  // called by Runner.initpy: the state after the initialization is what a reset goes back to
+  static synchronized boolean preparePython() {
+    if (pyReady) {
+      return true;
+    }
+    if (!Runner.initpy()) {
+      return false;
+    }
+    if (pyReady) {
+      return true;
+    }
+    pyReady = Runner.pyRunner.exec("def _sx_reset():\n"
+            + "  import sys\n"
+            + "  g = globals()\n"
+            + "  for name in [n for n in g.keys() if n not in _sx_clean]:\n"
+            + "    del g[name]\n"
+            + "  sys.path[:] = _sx_clean_path\n"
+            + "  for name in [n for n in sys.modules.keys() if n not in _sx_clean_modules]:\n"
+            + "    f = getattr(sys.modules[name], '__file__', None) or ''\n"
+            + "    if f and '.jar' not in f and not (sys.prefix and f.startswith(sys.prefix)):\n"
+            + "      del sys.modules[name]\n"
+            + "import sys as _sx_sys\n"
+            + "_sx_clean_path = list(_sx_sys.path)\n"
+            + "_sx_clean_modules = set(_sx_sys.modules.keys())\n"
+            + "del _sx_sys\n"
+            + "_sx_clean = set(globals().keys())\n"
+            + "_sx_clean.add('_sx_clean')\n");
+    return pyReady;
+  }
+
+  /**
+   * make sure the Python interpreter is initialized
+   *
+   * @return false if not possible
+   */
+  public static boolean leasePython() {
+    long start = System.nanoTime();
+    boolean cold = !pyReady;
+    if (!preparePython()) {
+      return false;
+    }
+    recordLease(cold, System.nanoTime() - start);
+    return true;
+  }
+
+  /**
+   * the Python interpreter for a run: waits until a running Python script has ended
+   * <br>must be followed by releasePython(), best in a finally block
+   *
+   * @return false if not possible (nothing to release then)
+   */
+  public static boolean leasePythonRun() {
+    pyLock.lock();
+    if (!leasePython()) {
+      pyLock.unlock();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * remove the globals created by the last run (and let the next Python run start)
+   */
+  public static void releasePython() {
+    try {
+      synchronized (ScriptEnginePool.class) {
+        if (!pyReady) {
+          return;
+        }
+        pyRuns++;
+        Runner.pyRunner.exec("_sx_reset()");
+      }
+    } finally {
+      if (pyLock.isHeldByCurrentThread()) {
+        pyLock.unlock();
+      }
+    }
+  }
+  //</editor-fold>
+
+  private static synchronized void recordLease(boolean cold, long nanos) {
+    if (cold) {
+      countCold++;
+      timeCold += nanos;
+    } else {
+      countWarm++;
+      timeWarm += nanos;
+    }
+    log(lvl, "lease: %s: %.1f msec", cold ? "cold" : "warm", nanos / 1000000.0);
+  }
+
+  /**
+   * @return number and average time (msec) of cold and warm engine starts
+   */
+  public static synchronized String getMetrics() {
+    return String.format("cold starts: %d (avg %.1f msec) warm starts: %d (avg %.3f msec) Python runs: %d",
+            countCold, countCold == 0 ? 0 : timeCold / 1000000.0 / countCold,
+            countWarm, countWarm == 0 ? 0 : timeWarm / 1000000.0 / countWarm, pyRuns);
+  }
+}
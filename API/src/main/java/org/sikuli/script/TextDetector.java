@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.script;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Profiler;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * finds the areas of an image, that probably contain text (lines of characters)
+ * <p>
+ * used before OCR (Settings.OcrTextDetection), so Tesseract only reads these boxes and not the whole image
+ * with all the icons and empty areas<br>
+ * the steps (OpenCV): gray, morphological gradient (edges of the characters), binary (Otsu),
+ * closing with a horizontal kernel (joins characters to words and lines), outer contours,
+ * the bounding boxes with a text like height and enough edges inside, padded and merged if overlapping
+ */
+public class TextDetector {
+
+  static {
+    RunTime.loadLibrary("VisionProxy");
+  }
+
+  private static String me = "TextDetector: ";
+  private static int lvl = 3;
+
+  private static void log(int level, String message, Object... args) {
+    Debug.logx(level, me + message, args);
+  }
+
+  /**
+   * min height of a text box (pixels)
+   */
+  public static int MinHeight = 6;
+
+  /**
+   * max height of a text box (pixels) - higher boxes are not taken as text
+   */
+  public static int MaxHeight = 80;
+
+  /**
+   * min width of a text box (pixels)
+   */
+  public static int MinWidth = 8;
+
+  /**
+   * characters with a gap up to this width (pixels) are joined to one box
+   */
+  public static int JoinWidth = 9;
+
+  /**
+   * added around each box (pixels), Tesseract needs some space around the characters
+   */
+  public static int Padding = 4;
+
+  /**
+   * min part of edge pixels in a box
+   */
+  public static double MinFill = 0.2;
+
+  private static final Profiler.Timer tDetect = Profiler.timer("TextDetector.detect");
+
+  private TextDetector() {
+  }
+
+  /**
+   * @param img the image
+   * @return the boxes probably containing text (sorted top to bottom, left to right)
+   */
+  public static List<Rectangle> detect(BufferedImage img) {
+    if (img == null) {
+      return new ArrayList<Rectangle>();
+    }
+    return detect(Image.createMat(img));
+  }
+
+  /**
+   * @param bgr the image as OpenCV Mat (BGR)
+   * @return the boxes probably containing text (sorted top to bottom, left to right)
+   */
+  public static List<Rectangle> detect(Mat bgr) {
+    long start = Profiler.start();
+    Mat gray = new Mat();
+    if (bgr.channels() == 1) {
+      gray = bgr;
+    } else {
+      Imgproc.cvtColor(bgr, gray, Imgproc.COLOR_BGR2GRAY);
+    }
+    Mat gradient = new Mat();
+    Imgproc.morphologyEx(gray, gradient, Imgproc.MORPH_GRADIENT,
+            Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(3, 3)));
+    Mat edges = new Mat();
+    Imgproc.threshold(gradient, edges, 0, 255, Imgproc.THRESH_BINARY | Imgproc.THRESH_OTSU);
+    Mat joined = new Mat();
+    Imgproc.morphologyEx(edges, joined, Imgproc.MORPH_CLOSE,
+            Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(JoinWidth, 1)));
+    List<MatOfPoint> contours = new ArrayList<MatOfPoint>();
+    Imgproc.findContours(joined, contours, new Mat(), Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
+    List<Rectangle> boxes = new ArrayList<Rectangle>();
+    Rectangle bounds = new Rectangle(0, 0, bgr.cols(), bgr.rows());
+    for (MatOfPoint contour : contours) {
+      Rect rect = Imgproc.boundingRect(contour);
+      if (rect.height < MinHeight || rect.height > MaxHeight || rect.width < MinWidth) {
+        continue;
+      }
+      double fill = Core.countNonZero(edges.submat(rect)) / (double) (rect.width * rect.height);
+      if (fill < MinFill) {
+        continue;
+      }
+      Rectangle box = new Rectangle(rect.x - Padding, rect.y - Padding,
+              rect.width + 2 * Padding, rect.height + 2 * Padding).intersection(bounds);
+      boxes.add(box);
+    }
+    boxes = merge(boxes);
+    long nanos = tDetect.stop(start);
+    log(lvl + 1, "%d boxes in %dx%d (%d contours)%s", boxes.size(), bgr.cols(), bgr.rows(), contours.size(),
+            nanos > 0 ? String.format(" %.1f msec", nanos / 1e6) : "");
+    return boxes;
+  }
+
+  private static List<Rectangle> merge(List<Rectangle> boxes) {
+    boolean merged = true;
+    while (merged) {
+      // a grown box might now overlap a box before it: repeat until nothing changes
+      merged = false;
+      for (int n = 0; n < boxes.size(); n++) {
+        Rectangle box = boxes.get(n);
+        for (int m = n + 1; m < boxes.size(); m++) {
+          if (box.intersects(boxes.get(m))) {
+            box = box.union(boxes.remove(m));
+            m = n;
+            merged = true;
+          }
+        }
+        boxes.set(n, box);
+      }
+    }
+    Collections.sort(boxes, new Comparator<Rectangle>() {
+      @Override
+      public int compare(Rectangle r1, Rectangle r2) {
+        if (r1.y != r2.y) {
+          return r1.y < r2.y ? -1 : 1;
+        }
+        return r1.x < r2.x ? -1 : (r1.x == r2.x ? 0 : 1);
+      }
+    });
+    return boxes;
+  }
+}
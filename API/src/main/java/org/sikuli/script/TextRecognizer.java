@@ -8,9 +8,24 @@ import org.sikuli.basics.Settings;
 import org.sikuli.basics.FileManager;
 import org.sikuli.basics.Debug;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.sikuli.basics.Profiler;
+import org.sikuli.natives.FindInput;
+import org.sikuli.natives.FindResults;
 import org.sikuli.natives.Mat;
+import org.sikuli.natives.OCRLine;
+import org.sikuli.natives.OCRLines;
+import org.sikuli.natives.OCRParagraph;
+import org.sikuli.natives.OCRParagraphs;
+import org.sikuli.natives.OCRText;
 import org.sikuli.natives.OCRWord;
 import org.sikuli.natives.OCRWords;
 import org.sikuli.natives.Vision;
@@ -19,6 +34,12 @@ import org.sikuli.natives.Vision;
  * INTERNAL USE --- NOT part of official API
  *
  * Will be rewritten for use of Tess4J - Java only implementation
+ * <p>
+ * thread safe: the OCR engines are kept in a pool - each OCR call leases an engine and returns it afterwards
+ * (text find, findAll, text, listText from observers and parallel threads).
+ * The pool belongs to the process (as the native engines) and is kept across reset():
+ * users of an older instance share it with the new one.
+ * The image conversion and the evaluation of the results are done outside the lease (in parallel).
  */
 public class TextRecognizer {
 
@@ -28,12 +49,37 @@ public class TextRecognizer {
   private static boolean initSuccess = false;
 	private static int lvl = 3;
 
+  /**
+   * the native library (VisionProxy) has one Tesseract instance per process,
+   * so it can only be used by one thread at a time
+   */
+  private static final int NATIVE_ENGINES = 1;
+
+  private static final Profiler.Timer tLease = Profiler.timer("TextRecognizer.lease");
+
+  private static final BlockingQueue<Engine> pool = createPool();
+
   static {
     RunTime.loadLibrary("VisionProxy");
   }
 
+  private static BlockingQueue<Engine> createPool() {
+    int size = getPoolSize();
+    BlockingQueue<Engine> engines = new ArrayBlockingQueue<Engine>(size);
+    for (int n = 0; n < size; n++) {
+      engines.add(new Engine(n));
+    }
+    return engines;
+  }
+
   private TextRecognizer() {
-    init();
+    // the native init must not run while another thread uses the engine
+    Engine engine = leaseEngine();
+    try {
+      init();
+    } finally {
+      releaseEngine(engine);
+    }
   }
 
   private void init() {
@@ -65,7 +111,7 @@ public class TextRecognizer {
     }
   }
 
-  public static TextRecognizer getInstance() {
+  public static synchronized TextRecognizer getInstance() {
     if (_instance == null) {
       _instance = new TextRecognizer();
     }
@@ -75,11 +121,139 @@ public class TextRecognizer {
     return _instance;
   }
 
-	public static void reset() {
+	public static synchronized void reset() {
 		_instance = null;
-		Vision.setSParameter("OCRLang", Settings.OcrLanguage);
+    OCRCache.clear();
+    Engine engine = leaseEngine();
+    try {
+      Vision.setSParameter("OCRLang", Settings.OcrLanguage);
+    } finally {
+      releaseEngine(engine);
+    }
 	}
 
+  /**
+   * @return the number of OCR engines: the number of cores, but at most what the OCR implementation allows
+   */
+  public static int getPoolSize() {
+    return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), NATIVE_ENGINES));
+  }
+
+  /**
+   * @return number of OCR results taken from the cache (Settings.OcrCacheSize)
+   */
+  public static long getCacheHits() {
+    return OCRCache.getHits();
+  }
+
+  /**
+   * @return number of OCR results not found in the cache
+   */
+  public static long getCacheMisses() {
+    return OCRCache.getMisses();
+  }
+
+  /**
+   * @return number of OCR results in the cache
+   */
+  public static int getCacheSize() {
+    return OCRCache.size();
+  }
+
+  /**
+   * drop all cached OCR results and reset the hit/miss statistics
+   */
+  public static void clearCache() {
+    OCRCache.clear();
+    OCRCache.resetStatistics();
+  }
+
+  /**
+   * get an OCR engine for exclusive use - waits until one is free
+   * <p>
+   * must be given back with release(), best in a finally block
+   *
+   * @return the engine
+   */
+  public Engine lease() {
+    return leaseEngine();
+  }
+
+  private static Engine leaseEngine() {
+    long start = Profiler.start();
+    Engine engine = null;
+    boolean interrupted = false;
+    while (engine == null) {
+      try {
+        engine = pool.take();
+      } catch (InterruptedException ex) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    tLease.stop(start);
+    return engine;
+  }
+
+  /**
+   * give back an engine got with lease()
+   *
+   * @param engine the engine
+   */
+  public void release(Engine engine) {
+    releaseEngine(engine);
+  }
+
+  private static void releaseEngine(Engine engine) {
+    if (engine != null) {
+      pool.offer(engine);
+    }
+  }
+
+  /**
+   * an OCR engine of the pool - used by one thread at a time (between lease() and release())
+   */
+  public static class Engine {
+
+    private final int id;
+
+    private Engine(int id) {
+      this.id = id;
+    }
+
+    public int getId() {
+      return id;
+    }
+
+    public String recognize(Mat mat) {
+      return Vision.recognize(mat).trim();
+    }
+
+    public String recognizeWord(Mat mat) {
+      return Vision.recognizeWord(mat).trim();
+    }
+
+    public OCRWords recognizeWords(Mat mat) {
+      return Vision.recognize_as_ocrtext(mat).getWords();
+    }
+
+    public OCRText recognizeText(Mat mat) {
+      return Vision.recognize_as_ocrtext(mat);
+    }
+
+    /**
+     * a find with a text target (the native find uses the OCR engine)
+     *
+     * @param findInput the find setup
+     * @return the results
+     */
+    public FindResults find(FindInput findInput) {
+      return Vision.find(findInput);
+    }
+  }
+
   public enum ListTextMode {
     WORD, LINE, PARAGRAPH
   };
@@ -88,21 +262,196 @@ public class TextRecognizer {
     return listText(simg, parent, ListTextMode.WORD);
   }
 
-  //TODO: support LINE and PARAGRAPH
-  // listText only supports WORD mode now.
+  /**
+   * the words, lines or paragraphs read in the image as matches (relative to the parent region)
+   *
+   * @param simg   the image
+   * @param parent the region the image was captured from
+   * @param mode   WORD, LINE or PARAGRAPH
+   * @return the matches - text: the word, line or paragraph (lines separated by newline),
+   * score: the OCR confidence (mean of the words for lines and paragraphs)
+   */
   public List<Match> listText(ScreenImage simg, Region parent, ListTextMode mode) {
-    Mat mat = Image.convertBufferedImageToMat(simg.getImage());
-    OCRWords words = Vision.recognize_as_ocrtext(mat).getWords();
     List<Match> ret = new LinkedList<Match>();
-    for (int i = 0; i < words.size(); i++) {
-      OCRWord w = words.get(i);
-      Match m = new Match(parent.x + w.getX(), parent.y + w.getY(), w.getWidth(), w.getHeight(),
-              w.getScore(), parent.getScreen(), w.getString());
-      ret.add(m);
+    Iterator<Match> matches = iterateText(simg, parent, mode);
+    while (matches.hasNext()) {
+      ret.add(matches.next());
     }
     return ret;
   }
 
+  /**
+   * like listText, but the matches are only created, when asked for with next()
+   * (with Settings.OcrCacheSize = 0 the OCR results are fetched from the native side one by one too)
+   *
+   * @param simg   the image
+   * @param parent the region the image was captured from
+   * @param mode   WORD, LINE or PARAGRAPH
+   * @return the matches
+   */
+  public Iterator<Match> iterateText(ScreenImage simg, final Region parent, ListTextMode mode) {
+    final Iterator<OCRCache.Word> items = readText(simg.getImage(), mode);
+    return new Iterator<Match>() {
+      @Override
+      public boolean hasNext() {
+        return items.hasNext();
+      }
+
+      @Override
+      public Match next() {
+        OCRCache.Word w = items.next();
+        return new Match(parent.x + w.x, parent.y + w.y, w.w, w.h, w.score, parent.getScreen(), w.text);
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException("remove");
+      }
+    };
+  }
+
+  /**
+   * the first word, line or paragraph containing the given text
+   * (stops reading the results at the first one)
+   *
+   * @param simg   the image
+   * @param parent the region the image was captured from
+   * @param text   the text to look for
+   * @param mode   WORD, LINE or PARAGRAPH
+   * @return the match or null if not found
+   */
+  public Match findText(ScreenImage simg, Region parent, String text, ListTextMode mode) {
+    Iterator<Match> matches = iterateText(simg, parent, mode);
+    while (matches.hasNext()) {
+      Match match = matches.next();
+      if (match.getText() != null && match.getText().contains(text)) {
+        return match;
+      }
+    }
+    return null;
+  }
+
+  Iterator<OCRCache.Word> readText(BufferedImage img, ListTextMode mode) {
+    OCRCache.Key key = OCRCache.key(img, OCRCache.kind(mode));
+    @SuppressWarnings("unchecked")
+    List<OCRCache.Word> cached = (List<OCRCache.Word>) OCRCache.get(key);
+    if (cached != null) {
+      return cached.iterator();
+    }
+    Mat mat = Image.convertBufferedImageToMat(img);
+    OCRText text;
+    Engine engine = lease();
+    try {
+      text = engine.recognizeText(mat);
+    } finally {
+      release(engine);
+    }
+    Iterator<OCRCache.Word> items = new TextItems(text, mode);
+    if (key == null) {
+      return items;
+    }
+    List<OCRCache.Word> result = new ArrayList<OCRCache.Word>();
+    while (items.hasNext()) {
+      result.add(items.next());
+    }
+    result = Collections.unmodifiableList(result);
+    OCRCache.put(key, result);
+    return result.iterator();
+  }
+
+  /**
+   * walks through the native OCR result: words, lines (of all paragraphs) or paragraphs
+   */
+  private static class TextItems implements Iterator<OCRCache.Word> {
+
+    private final ListTextMode mode;
+    private final OCRText text;
+    private OCRWords words = null;
+    private OCRParagraphs paragraphs = null;
+    private OCRLines lines = null;
+    private int nParagraph = 0;
+    private int nItem = 0;
+
+    TextItems(OCRText text, ListTextMode mode) {
+      this.text = text;
+      this.mode = mode;
+      if (mode == ListTextMode.WORD) {
+        words = text.getWords();
+      } else {
+        paragraphs = text.getParagraphs();
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (mode == ListTextMode.WORD) {
+        return nItem < words.size();
+      }
+      if (mode == ListTextMode.PARAGRAPH) {
+        return nItem < paragraphs.size();
+      }
+      while (lines == null || nItem >= lines.size()) {
+        if (nParagraph >= paragraphs.size()) {
+          return false;
+        }
+        lines = paragraphs.get(nParagraph++).getLines();
+        nItem = 0;
+      }
+      return true;
+    }
+
+    @Override
+    public OCRCache.Word next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      if (mode == ListTextMode.WORD) {
+        OCRWord w = words.get(nItem++);
+        return new OCRCache.Word(w.getX(), w.getY(), w.getWidth(), w.getHeight(), w.getScore(), w.getString());
+      }
+      if (mode == ListTextMode.LINE) {
+        OCRLine line = lines.get(nItem++);
+        return new OCRCache.Word(line.getX(), line.getY(), line.getWidth(), line.getHeight(),
+                meanScore(line.getWords()), line.getString());
+      }
+      OCRParagraph paragraph = paragraphs.get(nItem++);
+      OCRLines pLines = paragraph.getLines();
+      StringBuilder pText = new StringBuilder();
+      double scores = 0;
+      int count = 0;
+      for (int n = 0; n < pLines.size(); n++) {
+        OCRLine line = pLines.get(n);
+        if (n > 0) {
+          pText.append("\n");
+        }
+        pText.append(line.getString());
+        OCRWords lWords = line.getWords();
+        for (int m = 0; m < lWords.size(); m++) {
+          scores += lWords.get(m).getScore();
+          count++;
+        }
+      }
+      return new OCRCache.Word(paragraph.getX(), paragraph.getY(), paragraph.getWidth(), paragraph.getHeight(),
+              count == 0 ? 0 : scores / count, pText.toString());
+    }
+
+    private static double meanScore(OCRWords lWords) {
+      if (lWords.size() == 0) {
+        return 0;
+      }
+      double scores = 0;
+      for (int n = 0; n < lWords.size(); n++) {
+        scores += lWords.get(n).getScore();
+      }
+      return scores / lWords.size();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+  }
+
   public String recognize(ScreenImage simg) {
     BufferedImage img = simg.getImage();
     return recognize(img);
@@ -110,8 +459,20 @@ public class TextRecognizer {
 
   public String recognize(BufferedImage img) {
     if (initSuccess) {
+      OCRCache.Key key = OCRCache.key(img, OCRCache.TEXT);
+      String text = (String) OCRCache.get(key);
+      if (text != null) {
+        return text;
+      }
       Mat mat = Image.convertBufferedImageToMat(img);
-      return Vision.recognize(mat).trim();
+      Engine engine = lease();
+      try {
+        text = engine.recognize(mat);
+      } finally {
+        release(engine);
+      }
+      OCRCache.put(key, text);
+      return text;
     } else {
       return "";
     }
@@ -124,8 +485,20 @@ public class TextRecognizer {
 
   public String recognizeWord(BufferedImage img) {
     if (initSuccess) {
+      OCRCache.Key key = OCRCache.key(img, OCRCache.WORD);
+      String word = (String) OCRCache.get(key);
+      if (word != null) {
+        return word;
+      }
       Mat mat = Image.convertBufferedImageToMat(img);
-      return Vision.recognizeWord(mat).trim();
+      Engine engine = lease();
+      try {
+        word = engine.recognizeWord(mat);
+      } finally {
+        release(engine);
+      }
+      OCRCache.put(key, word);
+      return word;
     } else {
       return "";
     }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.script;
+
+import org.sikuli.basics.Debug;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * INTERNAL USE: incremental OCR of an observed region (Settings.OcrTextIncremental)
+ * <p>
+ * keeps the lines (box and text) and the capture of the last read.<br>
+ * the next read compares the actual capture with that one (and takes the changes reported by the Observer):
+ * only the horizontal bands, that contain a change, are OCRed again (widened to the lines they touch),
+ * all other lines are taken from the last read<br>
+ * valid only as long as the region is observed without a break (the Region drops it otherwise)
+ */
+final class TextTracker {
+
+  private static String me = "TextTracker: ";
+  private static int lvl = 3;
+
+  private static void log(int level, String message, Object... args) {
+    Debug.logx(level, me + message, args);
+  }
+
+  /**
+   * added above and below a change (pixels), so the characters of a changed line are not cut
+   */
+  static int BandPadding = 4;
+
+  private List<OCRCache.Word> lines = null;
+  private int width = -1;
+  private int height = -1;
+  private int[] pixels = null;
+  private final List<Rectangle> dirty = new ArrayList<Rectangle>();
+
+  /**
+   * @param changes the changed areas (relative to the region)
+   */
+  synchronized void changed(List<Rectangle> changes) {
+    if (lines != null) {
+      dirty.addAll(changes);
+    }
+  }
+
+  /**
+   * @param simg the actual capture of the region
+   * @param tr   the TextRecognizer
+   * @return the text: the lines separated by newline
+   */
+  synchronized String read(ScreenImage simg, TextRecognizer tr) {
+    BufferedImage img = simg.getImage();
+    int[] now = img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+    if (lines == null || img.getWidth() != width || img.getHeight() != height) {
+      width = img.getWidth();
+      height = img.getHeight();
+      pixels = now;
+      lines = collect(tr.readText(img, TextRecognizer.ListTextMode.LINE), 0);
+      dirty.clear();
+      log(lvl, "full read: %d lines", lines.size());
+      return getText();
+    }
+    compare(now);
+    pixels = now;
+    if (dirty.isEmpty()) {
+      return getText();
+    }
+    List<int[]> bands = getBands();
+    List<OCRCache.Word> kept = new ArrayList<OCRCache.Word>();
+    for (OCRCache.Word line : lines) {
+      if (!inBands(line, bands)) {
+        kept.add(line);
+      }
+    }
+    int keptLines = kept.size();
+    int bandHeight = 0;
+    for (int[] band : bands) {
+      BufferedImage part = img.getSubimage(0, band[0], width, band[1] - band[0]);
+      kept.addAll(collect(tr.readText(part, TextRecognizer.ListTextMode.LINE), band[0]));
+      bandHeight += band[1] - band[0];
+    }
+    Collections.sort(kept, new Comparator<OCRCache.Word>() {
+      @Override
+      public int compare(OCRCache.Word w1, OCRCache.Word w2) {
+        if (w1.y != w2.y) {
+          return w1.y < w2.y ? -1 : 1;
+        }
+        return w1.x < w2.x ? -1 : (w1.x == w2.x ? 0 : 1);
+      }
+    });
+    log(lvl, "%d changes: %d bands (%d of %d pixel rows) read: %d lines kept, %d lines now",
+            dirty.size(), bands.size(), bandHeight, height, keptLines, kept.size());
+    lines = kept;
+    dirty.clear();
+    return getText();
+  }
+
+  /**
+   * @return the lines of the last read (relative to the region)
+   */
+  synchronized List<OCRCache.Word> getLines() {
+    return lines == null ? new ArrayList<OCRCache.Word>() : new ArrayList<OCRCache.Word>(lines);
+  }
+
+  private String getText() {
+    StringBuilder text = new StringBuilder();
+    for (OCRCache.Word line : lines) {
+      if (text.length() > 0) {
+        text.append("\n");
+      }
+      text.append(line.text.trim());
+    }
+    return text.toString();
+  }
+
+  // the rows changed since the last read: also changes below the threshold of the observer
+  // and those after its last scan
+  private void compare(int[] now) {
+    int top = -1;
+    for (int row = 0; row <= height; row++) {
+      boolean changed = row < height && !sameRow(now, row);
+      if (changed && top < 0) {
+        top = row;
+      } else if (!changed && top > -1) {
+        dirty.add(new Rectangle(0, top, width, row - top));
+        top = -1;
+      }
+    }
+  }
+
+  private boolean sameRow(int[] now, int row) {
+    int end = (row + 1) * width;
+    for (int n = row * width; n < end; n++) {
+      if (now[n] != pixels[n]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static List<OCRCache.Word> collect(Iterator<OCRCache.Word> items, int offsetY) {
+    List<OCRCache.Word> collected = new ArrayList<OCRCache.Word>();
+    while (items.hasNext()) {
+      OCRCache.Word w = items.next();
+      collected.add(offsetY == 0 ? w : new OCRCache.Word(w.x, w.y + offsetY, w.w, w.h, w.score, w.text));
+    }
+    return collected;
+  }
+
+  // the rows to read again: the changes (padded) widened to the lines they touch, merged if overlapping
+  private List<int[]> getBands() {
+    List<int[]> bands = new ArrayList<int[]>();
+    for (Rectangle change : dirty) {
+      int top = Math.max(0, change.y - BandPadding);
+      int bottom = Math.min(height, change.y + change.height + BandPadding);
+      boolean widened = true;
+      while (widened) {
+        widened = false;
+        for (OCRCache.Word line : lines) {
+          if (line.y < bottom && line.y + line.h > top && (line.y < top || line.y + line.h > bottom)) {
+            top = Math.max(0, Math.min(top, line.y));
+            bottom = Math.min(height, Math.max(bottom, line.y + line.h));
+            widened = true;
+          }
+        }
+      }
+      if (bottom > top) {
+        bands.add(new int[]{top, bottom});
+      }
+    }
+    Collections.sort(bands, new Comparator<int[]>() {
+      @Override
+      public int compare(int[] b1, int[] b2) {
+        return b1[0] < b2[0] ? -1 : (b1[0] == b2[0] ? 0 : 1);
+      }
+    });
+    List<int[]> merged = new ArrayList<int[]>();
+    for (int[] band : bands) {
+      int[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+      if (last != null && band[0] <= last[1]) {
+        last[1] = Math.max(last[1], band[1]);
+      } else {
+        merged.add(band);
+      }
+    }
+    return merged;
+  }
+
+  private static boolean inBands(OCRCache.Word line, List<int[]> bands) {
+    for (int[] band : bands) {
+      if (line.y < band[1] && line.y + line.h > band[0]) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
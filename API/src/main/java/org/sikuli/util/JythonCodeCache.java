@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.util;
+
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Profiler;
+import org.sikuli.basics.Settings;
+import org.sikuli.script.RunTime;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * INTERNAL USE: the compiled code of Jython scripts (.py), so a script is compiled only once
+ * <p>
+ * a script is compiled to a Java class (as Jython does with $py.class for imported modules),
+ * that is kept in memory and saved in the SikulixStore (folder JythonCache),
+ * so it is available for the next run in this and in a new JVM<br>
+ * key: the path, the content (SHA-1) and the Jython version - the modification time and size
+ * decide, whether the content has to be read and hashed again<br>
+ * Jython is accessed via reflection (as JythonHelper): if something is not available,
+ * getCode returns null and the script is run with execfile as before<br>
+ * switched off with Settings.ScriptCodeCache = false
+ */
+public class JythonCodeCache {
+
+  private static final String me = "JythonCodeCache: ";
+  private static int lvl = 3;
+
+  private static void log(int level, String message, Object... args) {
+    Debug.logx(level, me + message, args);
+  }
+
+  private static final Profiler.Timer tCompile = Profiler.timer("JythonCodeCache.compile");
+  private static final Profiler.Timer tLoad = Profiler.timer("JythonCodeCache.load");
+
+  private static final long MAX_AGE = 30 * 24 * 3600 * 1000L;
+
+  private static JythonCodeCache instance = null;
+  private static boolean checked = false;
+
+  private final Method mCompileSource;
+  private final Method mMakeCode;
+  private final String version;
+  private final File folder;
+  private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+  private static class Entry {
+    long modified;
+    long length;
+    String key;
+    Object code;
+  }
+
+  /**
+   * @return the cache or null if switched off or not possible (no Jython, see log)
+   */
+  public static synchronized JythonCodeCache get() {
+    if (!Settings.ScriptCodeCache) {
+      return null;
+    }
+    if (!checked) {
+      checked = true;
+      try {
+        instance = new JythonCodeCache();
+      } catch (Exception ex) {
+        log(-1, "not available: %s", ex);
+      }
+    }
+    return instance;
+  }
+
+  private JythonCodeCache() throws Exception {
+    Class<?> cImp = Class.forName("org.python.core.imp");
+    mCompileSource = cImp.getMethod("compileSource", String.class, InputStream.class, String.class, long.class);
+    mMakeCode = Class.forName("org.python.core.BytecodeLoader")
+            .getMethod("makeCode", String.class, byte[].class, String.class);
+    // compiled classes only fit the Jython that made them
+    version = Class.forName("org.python.core.PySystemState").getField("version").get(null)
+            + "-" + cImp.getMethod("getAPIVersion").invoke(null);
+    File store = RunTime.get().fSikulixStore;
+    folder = store == null ? null : new File(store, "JythonCache");
+    if (folder != null) {
+      folder.mkdirs();
+      removeOld();
+    }
+    log(lvl, "Jython %s: %s", version, folder == null ? "in memory only" : folder);
+  }
+
+  private void removeOld() {
+    File[] files = folder.listFiles();
+    if (files == null) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    for (File file : files) {
+      if (now - file.lastModified() > MAX_AGE) {
+        file.delete();
+      }
+    }
+  }
+
+  /**
+   * @param pyFile the script
+   * @return the compiled code (a PyCode for PythonInterpreter.exec) or null (not possible, compile error):
+   * then use execfile
+   */
+  public synchronized Object getCode(File pyFile) {
+    String path = pyFile.getAbsolutePath();
+    long modified = pyFile.lastModified();
+    long length = pyFile.length();
+    Entry entry = entries.get(path);
+    if (entry != null && entry.modified == modified && entry.length == length) {
+      log(lvl + 1, "from memory: %s", path);
+      return entry.code;
+    }
+    try {
+      long start = System.nanoTime();
+      byte[] source = readAll(pyFile);
+      String key = hash(path, source);
+      if (entry != null && key.equals(entry.key)) {
+        // touched only
+        entry.modified = modified;
+        entry.length = length;
+        return entry.code;
+      }
+      String name = className(pyFile);
+      File classFile = folder == null ? null : new File(folder, key + ".class");
+      Object code;
+      if (classFile != null && classFile.exists()) {
+        code = mMakeCode.invoke(null, name + "$py", readAll(classFile), path);
+        classFile.setLastModified(System.currentTimeMillis());
+        long nanos = System.nanoTime() - start;
+        tLoad.record(nanos);
+        log(lvl, "from disk (warm): %s (%.1f msec)", path, nanos / 1e6);
+      } else {
+        byte[] compiled = (byte[]) mCompileSource.invoke(null, name, new ByteArrayInputStream(source), path, modified);
+        code = mMakeCode.invoke(null, name + "$py", compiled, path);
+        if (classFile != null) {
+          save(classFile, compiled);
+        }
+        long nanos = System.nanoTime() - start;
+        tCompile.record(nanos);
+        log(lvl, "compiled (cold): %s (%.1f msec)", path, nanos / 1e6);
+      }
+      if (entry == null) {
+        entry = new Entry();
+        entries.put(path, entry);
+      } else if (folder != null) {
+        // the class of the previous content is no longer needed
+        new File(folder, entry.key + ".class").delete();
+      }
+      entry.modified = modified;
+      entry.length = length;
+      entry.key = key;
+      entry.code = code;
+      return code;
+    } catch (Exception ex) {
+      // e.g. a SyntaxError: execfile reports it as usual
+      log(lvl, "not cached: %s: %s", path, ex.getCause() == null ? ex : ex.getCause());
+      return null;
+    }
+  }
+
+  /**
+   * forget the compiled code in memory and on disk
+   */
+  public synchronized void clear() {
+    entries.clear();
+    File[] files = folder == null ? null : folder.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+  }
+
+  private String hash(String path, byte[] source) throws Exception {
+    MessageDigest digest = MessageDigest.getInstance("SHA-1");
+    digest.update((version + "\n" + path + "\n").getBytes(Charset.forName("UTF-8")));
+    digest.update(source);
+    StringBuilder key = new StringBuilder();
+    for (byte b : digest.digest()) {
+      key.append(String.format("%02x", b));
+    }
+    return key.toString();
+  }
+
+  // the base of the class name: only characters valid in a Java identifier
+  private static String className(File pyFile) {
+    String name = pyFile.getName().replaceFirst("\\.py$", "").replaceAll("[^A-Za-z0-9_]", "_");
+    return Character.isJavaIdentifierStart(name.isEmpty() ? '0' : name.charAt(0)) ? name : "_" + name;
+  }
+
+  private static byte[] readAll(File file) throws IOException {
+    RandomAccessFile in = new RandomAccessFile(file, "r");
+    try {
+      byte[] content = new byte[(int) in.length()];
+      in.readFully(content);
+      return content;
+    } finally {
+      in.close();
+    }
+  }
+
+  // written to a temporary file first: other processes might read the same class at the same time
+  private static void save(File classFile, byte[] compiled) {
+    File temp = new File(classFile.getPath() + "." + System.nanoTime() + ".tmp");
+    try {
+      FileOutputStream out = new FileOutputStream(temp);
+      try {
+        out.write(compiled);
+      } finally {
+        out.close();
+      }
+      if (!temp.renameTo(classFile)) {
+        temp.delete();
+      }
+    } catch (IOException ex) {
+      log(-1, "save: %s: %s", classFile, ex.getMessage());
+      temp.delete();
+    }
+  }
+}
@@ -62,7 +62,7 @@ public class JythonHelper implements JLangHelperInterface {
   static Class cPyObject = null;
   static Class cPyString = null;
   static Method mLen, mGet, mSet, mAdd, mRemove, mClear;
-  static Method mGetSystemState, mExec, mExecfile;
+  static Method mGetSystemState, mExec, mExecfile, mExecCode;
   static Field PI_path;
 
   private JythonHelper() {
@@ -90,6 +90,7 @@ public class JythonHelper implements JLangHelperInterface {
         mGetSystemState = cInterpreter.getMethod("getSystemState", nc);
         mExec = cInterpreter.getMethod("exec", new Class[]{String.class});
         mExecfile = cInterpreter.getMethod("execfile", new Class[]{String.class});
+        mExecCode = cInterpreter.getMethod("exec", new Class[]{Class.forName("org.python.core.PyObject")});
         Constructor PI_new = cInterpreter.getConstructor(nc);
         interpreter = PI_new.newInstance(null);
         cPyException = Class.forName("org.python.core.PyException");
@@ -302,8 +303,14 @@ public class JythonHelper implements JLangHelperInterface {
 
   public int execfile(String fpScript) {
     int retval = -999;
+    JythonCodeCache cache = JythonCodeCache.get();
+    Object code = cache == null ? null : cache.getCode(new File(fpScript));
     try {
-      mExecfile.invoke(interpreter, fpScript);
+      if (code != null) {
+        mExecCode.invoke(interpreter, code);
+      } else {
+        mExecfile.invoke(interpreter, fpScript);
+      }
     } catch (Exception ex) {
       PyException pex = new PyException(ex.getCause());
       if ((retval = pex.isTypeExit()) < 0) {
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.virtual;
+
+import org.sikuli.script.*;
+
+import java.awt.*;
+
+/**
+ * the robot of a VirtualScreen
+ * <p>
+ * mouse: a click (down and up at the same position) is given to the screen, that might switch the frame<br>
+ * keyboard: typed characters are only collected (getTyped())<br>
+ * delay: advances the clock of the screen (sleeps only in real time mode)
+ */
+public class VirtualRobot implements IRobot {
+
+  final static int MAX_DELAY = 60000;
+
+  private final VirtualScreen screen;
+
+  private int mouseX = 0;
+  private int mouseY = 0;
+  private int downX = -1;
+  private int downY = -1;
+  private boolean mouseDown = false;
+  private int autodelay = 0;
+  private final StringBuilder typed = new StringBuilder();
+
+  public VirtualRobot(VirtualScreen screen) {
+    this.screen = screen;
+  }
+
+  @Override
+  public boolean isRemote() {
+    return true;
+  }
+
+  @Override
+  public IScreen getScreen() {
+    return screen;
+  }
+
+  @Override
+  public void cleanup() {
+  }
+
+  /**
+   * @return the characters typed so far
+   */
+  public synchronized String getTyped() {
+    return typed.toString();
+  }
+
+  /**
+   * forget the characters typed so far
+   */
+  public synchronized void resetTyped() {
+    typed.setLength(0);
+  }
+
+  //<editor-fold desc="key actions">
+  @Override
+  public void keyDown(String keys) {
+  }
+
+  @Override
+  public void keyUp(String keys) {
+  }
+
+  @Override
+  public void keyDown(int code) {
+  }
+
+  @Override
+  public void keyUp(int code) {
+  }
+
+  @Override
+  public void keyUp() {
+  }
+
+  @Override
+  public void pressModifiers(int modifiers) {
+  }
+
+  @Override
+  public void releaseModifiers(int modifiers) {
+  }
+
+  @Override
+  public synchronized void typeChar(char character, KeyMode mode) {
+    if (mode != KeyMode.RELEASE_ONLY) {
+      typed.append(character);
+    }
+  }
+
+  @Override
+  public void typeKey(int key) {
+  }
+
+  @Override
+  public void typeStarts() {
+  }
+
+  @Override
+  public void typeEnds() {
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="mouse actions">
+  @Override
+  public synchronized void mouseMove(int x, int y) {
+    mouseX = x;
+    mouseY = y;
+  }
+
+  @Override
+  public void mouseDown(int buttons) {
+    clickStarts();
+  }
+
+  @Override
+  public int mouseUp(int buttons) {
+    clickEnds();
+    return 0;
+  }
+
+  @Override
+  public synchronized void mouseReset() {
+    mouseDown = false;
+  }
+
+  @Override
+  public synchronized void clickStarts() {
+    mouseDown = true;
+    downX = mouseX;
+    downY = mouseY;
+  }
+
+  @Override
+  public void clickEnds() {
+    int x, y;
+    synchronized (this) {
+      if (!mouseDown) {
+        return;
+      }
+      mouseDown = false;
+      if (downX != mouseX || downY != mouseY) {
+        // a drag: no transition
+        return;
+      }
+      x = mouseX;
+      y = mouseY;
+    }
+    screen.clickAt(x, y);
+  }
+
+  @Override
+  public void smoothMove(Location dest) {
+    mouseMove(dest.x, dest.y);
+  }
+
+  @Override
+  public void smoothMove(Location src, Location dest, long ms) {
+    mouseMove(dest.x, dest.y);
+  }
+
+  @Override
+  public void mouseWheel(int wheelAmt) {
+  }
+  //</editor-fold>
+
+  @Override
+  public ScreenImage captureScreen(Rectangle screenRect) {
+    return screen.capture(screenRect);
+  }
+
+  @Override
+  public Color getColorAt(int x, int y) {
+    return screen.getColorAt(x, y);
+  }
+
+  @Override
+  public void waitForIdle() {
+  }
+
+  @Override
+  public void delay(int ms) {
+    if (ms < 0) {
+      ms = 0;
+    }
+    if (ms > MAX_DELAY) {
+      ms = MAX_DELAY;
+    }
+    if (!screen.isRealTime()) {
+      screen.advance(ms);
+      return;
+    }
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException e) {
+    }
+  }
+
+  @Override
+  public void setAutoDelay(int ms) {
+    if (ms < 0) {
+      ms = 0;
+    }
+    if (ms > MAX_DELAY) {
+      ms = MAX_DELAY;
+    }
+    autodelay = ms;
+  }
+}
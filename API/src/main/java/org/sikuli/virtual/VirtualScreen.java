@@ -0,0 +1,549 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.virtual;
+
+import org.sikuli.basics.Debug;
+import org.sikuli.script.*;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * a headless screen, that replays a recorded sequence of screenshots (frames)
+ * <p>
+ * for tests and CI: find, wait, findAll and observe work as on a real screen, but no display is needed.<br>
+ * frames: a folder or a zip file with images (png, jpg), used in the order of the file names -
+ * or a list of BufferedImages (all are converted to the size of the first frame)<br>
+ * frames.txt (optional, in the folder or zip) contains the rules (one per line, # comment):<br>
+ * time frame msec - the frame is shown for msec, then the next one (0: stays until a click, the default)<br>
+ * time * msec - the same for all frames<br>
+ * click frame x y w h toFrame - a click inside the rectangle, while frame is shown, switches to toFrame<br>
+ * loop - after the last timed frame start again with the first one<br>
+ * frame: number (0 = first) or file name, * for all frames (click: on every frame)
+ * <p>
+ * The screen has its own clock: the robot's delay (used by wait and observe between the searches) does not sleep,
+ * but advances the clock, so a wait(10) on a frame, that comes after 5 seconds, returns at once.
+ * With setRealTime(true) the wall clock is used and delay really waits.
+ */
+public class VirtualScreen extends Region implements IScreen, IScreenClock {
+
+  static {
+    RunTime.loadLibrary("VisionProxy");
+  }
+
+  private static String me = "VirtualScreen: ";
+  private static int lvl = 3;
+
+  private static void log(int level, String message, Object... args) {
+    Debug.logx(level, me + message, args);
+  }
+
+  /**
+   * the name of the optional rules file in the frames folder or zip
+   */
+  public static final String RULES = "frames.txt";
+
+  private static final int ANY = -1;
+
+  private final List<BufferedImage> frames = new ArrayList<>();
+  private final List<String> frameNames = new ArrayList<>();
+  private long[] frameTimes;
+  private final List<Transition> transitions = new ArrayList<>();
+  private boolean loop = false;
+
+  private int current = 0;
+  private long currentSince = 0;
+  private long clock = 0;
+  private boolean realTime = false;
+  private long realStart = 0;
+
+  private final VirtualRobot robot;
+  private final Rectangle bounds;
+  private ScreenImage lastScreenImage = null;
+  private int clicks = 0;
+
+  private static class Transition {
+    final int from;
+    final Rectangle area;
+    final int to;
+
+    Transition(int from, Rectangle area, int to) {
+      this.from = from;
+      this.area = area;
+      this.to = to;
+    }
+  }
+
+  //<editor-fold desc="Inits">
+
+  /**
+   * @param path a folder or zip file containing the frames (and optionally frames.txt)
+   * @return the screen or null if no frames could be loaded (see log)
+   */
+  public static VirtualScreen start(String path) {
+    try {
+      return new VirtualScreen(path);
+    } catch (Exception ex) {
+      log(-1, "start: %s: %s", path, ex.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * @param path a folder or zip file containing the frames (and optionally frames.txt)
+   * @throws IOException if the frames could not be loaded
+   */
+  public VirtualScreen(String path) throws IOException {
+    super();
+    File file = new File(path);
+    List<String> rules;
+    if (file.isDirectory()) {
+      rules = loadFolder(file);
+    } else if (file.getName().toLowerCase().endsWith(".zip")) {
+      rules = loadZip(file);
+    } else {
+      throw new IOException("neither folder nor zip file");
+    }
+    if (frames.isEmpty()) {
+      throw new IOException("no frames found");
+    }
+    bounds = new Rectangle(0, 0, frames.get(0).getWidth(), frames.get(0).getHeight());
+    robot = init();
+    for (String rule : rules) {
+      parseRule(rule);
+    }
+    log(lvl, "%s: %d frames, %d transitions", path, frames.size(), transitions.size());
+  }
+
+  /**
+   * @param images the frames in the order to be shown
+   */
+  public VirtualScreen(List<BufferedImage> images) {
+    super();
+    if (images == null || images.isEmpty()) {
+      throw new IllegalArgumentException(me + "no frames given");
+    }
+    for (int n = 0; n < images.size(); n++) {
+      addFrame("frame" + n, images.get(n));
+    }
+    if (frames.isEmpty()) {
+      throw new IllegalArgumentException(me + "no valid frames given");
+    }
+    bounds = new Rectangle(0, 0, frames.get(0).getWidth(), frames.get(0).getHeight());
+    robot = init();
+  }
+
+  private VirtualRobot init() {
+    setOtherScreen(this);
+    x = 0;
+    y = 0;
+    w = bounds.width;
+    h = bounds.height;
+    for (int n = 0; n < frames.size(); n++) {
+      frames.set(n, normalize(frames.get(n)));
+    }
+    frameTimes = new long[frames.size()];
+    return new VirtualRobot(this);
+  }
+
+  private static boolean isFrameFile(String name) {
+    String lower = name.toLowerCase();
+    return lower.endsWith(".png") || lower.endsWith(".jpg") || lower.endsWith(".jpeg");
+  }
+
+  private List<String> loadFolder(File folder) throws IOException {
+    String[] names = folder.list();
+    Arrays.sort(names);
+    for (String name : names) {
+      if (isFrameFile(name)) {
+        addFrame(name, ImageIO.read(new File(folder, name)));
+      }
+    }
+    File rules = new File(folder, RULES);
+    if (rules.exists()) {
+      try (InputStream in = new FileInputStream(rules)) {
+        return readLines(in);
+      }
+    }
+    return new ArrayList<>();
+  }
+
+  private List<String> loadZip(File zip) throws IOException {
+    List<String> rules = new ArrayList<>();
+    try (ZipFile zipFile = new ZipFile(zip)) {
+      List<String> names = new ArrayList<>();
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        if (!entry.isDirectory()) {
+          names.add(entry.getName());
+        }
+      }
+      Collections.sort(names);
+      for (String name : names) {
+        String simpleName = new File(name).getName();
+        try (InputStream in = zipFile.getInputStream(zipFile.getEntry(name))) {
+          if (isFrameFile(simpleName)) {
+            addFrame(simpleName, ImageIO.read(in));
+          } else if (RULES.equals(simpleName)) {
+            rules = readLines(in);
+          }
+        }
+      }
+    }
+    return rules;
+  }
+
+  private static List<String> readLines(InputStream in) throws IOException {
+    List<String> lines = new ArrayList<>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      lines.add(line);
+    }
+    return lines;
+  }
+
+  private void addFrame(String name, BufferedImage image) {
+    if (image == null) {
+      log(-1, "not readable as image: %s", name);
+      return;
+    }
+    frames.add(image);
+    frameNames.add(name);
+  }
+
+  private BufferedImage normalize(BufferedImage image) {
+    if (image.getType() == BufferedImage.TYPE_INT_RGB
+            && image.getWidth() == bounds.width && image.getHeight() == bounds.height) {
+      return image;
+    }
+    BufferedImage frame = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = frame.createGraphics();
+    g.drawImage(image, 0, 0, null);
+    g.dispose();
+    return frame;
+  }
+
+  private void parseRule(String rule) {
+    String line = rule.trim();
+    if (line.isEmpty() || line.startsWith("#")) {
+      return;
+    }
+    String[] parts = line.split("\\s+");
+    try {
+      if ("loop".equals(parts[0]) && parts.length == 1) {
+        setLoop(true);
+      } else if ("time".equals(parts[0]) && parts.length == 3) {
+        int frame = getFrameIndex(parts[1]);
+        long msec = Long.parseLong(parts[2]);
+        if (frame == ANY) {
+          setFrameTime(msec);
+        } else {
+          setFrameTime(frame, msec);
+        }
+      } else if ("click".equals(parts[0]) && parts.length == 7) {
+        addTransition(getFrameIndex(parts[1]),
+                new Rectangle(Integer.parseInt(parts[2]), Integer.parseInt(parts[3]),
+                        Integer.parseInt(parts[4]), Integer.parseInt(parts[5])),
+                getFrameIndex(parts[6]));
+      } else {
+        log(-1, "%s: invalid rule: %s", RULES, line);
+      }
+    } catch (Exception ex) {
+      log(-1, "%s: invalid rule: %s (%s)", RULES, line, ex.getMessage());
+    }
+  }
+
+  private int getFrameIndex(String frame) {
+    if ("*".equals(frame)) {
+      return ANY;
+    }
+    int index = frameNames.indexOf(frame);
+    if (index < 0) {
+      index = Integer.parseInt(frame);
+    }
+    checkFrame(index);
+    return index;
+  }
+
+  private void checkFrame(int frame) {
+    if (frame < 0 || frame >= frames.size()) {
+      throw new IllegalArgumentException(String.format("%sno frame %d (0 ... %d)", me, frame, frames.size() - 1));
+    }
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="frames and clock">
+
+  /**
+   * @param frame the frame
+   * @param msec  how long it is shown before the next one (0: until a click switches)
+   */
+  public synchronized void setFrameTime(int frame, long msec) {
+    checkFrame(frame);
+    frameTimes[frame] = Math.max(0, msec);
+  }
+
+  /**
+   * @param msec how long each frame is shown before the next one (0: until a click switches)
+   */
+  public synchronized void setFrameTime(long msec) {
+    Arrays.fill(frameTimes, Math.max(0, msec));
+  }
+
+  /**
+   * a click inside the area switches to another frame
+   *
+   * @param from the frame where the click happens (-1: any frame)
+   * @param area the clickable area
+   * @param to   the frame to switch to
+   */
+  public synchronized void addTransition(int from, Rectangle area, int to) {
+    if (from != ANY) {
+      checkFrame(from);
+    }
+    checkFrame(to);
+    transitions.add(new Transition(from, new Rectangle(area), to));
+  }
+
+  /**
+   * @param loop true: after the last timed frame start again with the first one
+   */
+  public synchronized void setLoop(boolean loop) {
+    this.loop = loop;
+  }
+
+  /**
+   * @param realTime true: frames are timed by the wall clock and the robot's delay really waits,
+   *                 false (default): the virtual clock, only advanced by the robot's delay
+   */
+  public synchronized void setRealTime(boolean realTime) {
+    if (realTime && !this.realTime) {
+      realStart = System.currentTimeMillis() - clock;
+    } else if (!realTime && this.realTime) {
+      clock = getTime();
+    }
+    this.realTime = realTime;
+  }
+
+  public synchronized boolean isRealTime() {
+    return realTime;
+  }
+
+  /**
+   * @return msec since start on the clock of this screen
+   */
+  @Override
+  public synchronized long getTime() {
+    if (realTime) {
+      return System.currentTimeMillis() - realStart;
+    }
+    return clock;
+  }
+
+  /**
+   * the robot's delay: advances the virtual clock (sleeps in real time mode)
+   *
+   * @param msec time to pass
+   */
+  @Override
+  public void pause(long msec) {
+    getRobot().delay((int) Math.min(msec, VirtualRobot.MAX_DELAY));
+  }
+
+  /**
+   * advance the virtual clock (no effect in real time mode)
+   *
+   * @param msec time to pass
+   */
+  public synchronized void advance(long msec) {
+    if (!realTime && msec > 0) {
+      clock += msec;
+    }
+  }
+
+  /**
+   * @return the frame shown now
+   */
+  public synchronized int getFrame() {
+    update();
+    return current;
+  }
+
+  /**
+   * @return the name of the frame shown now (the file name)
+   */
+  public synchronized String getFrameName() {
+    return frameNames.get(getFrame());
+  }
+
+  /**
+   * @return number of frames
+   */
+  public int getFrameCount() {
+    return frames.size();
+  }
+
+  /**
+   * show the given frame now (the timing starts again)
+   *
+   * @param frame the frame
+   */
+  public synchronized void setFrame(int frame) {
+    checkFrame(frame);
+    current = frame;
+    currentSince = getTime();
+    log(lvl + 1, "frame %d: %s", current, frameNames.get(current));
+  }
+
+  /**
+   * @return number of clicks so far
+   */
+  public synchronized int getClicks() {
+    return clicks;
+  }
+
+  private void update() {
+    long now = getTime();
+    while (frameTimes[current] > 0 && now - currentSince >= frameTimes[current]) {
+      int next = current + 1;
+      if (next >= frames.size()) {
+        if (!loop) {
+          break;
+        }
+        next = 0;
+      }
+      currentSince += frameTimes[current];
+      current = next;
+      log(lvl + 1, "frame %d: %s", current, frameNames.get(current));
+    }
+  }
+
+  synchronized void clickAt(int clickX, int clickY) {
+    update();
+    clicks++;
+    for (Transition transition : transitions) {
+      if ((transition.from == ANY || transition.from == current) && transition.area.contains(clickX, clickY)) {
+        log(lvl, "click (%d,%d): frame %d -> %d", clickX, clickY, current, transition.to);
+        setFrame(transition.to);
+        return;
+      }
+    }
+    log(lvl + 1, "click (%d,%d): frame %d: no transition", clickX, clickY, current);
+  }
+
+  synchronized Color getColorAt(int colorX, int colorY) {
+    update();
+    return new Color(frames.get(current).getRGB(colorX - bounds.x, colorY - bounds.y));
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="Overrides">
+  @Override
+  public String toString() {
+    return String.format("VirtualScreen: %d frames (%d x %d)", frames.size(), bounds.width, bounds.height);
+  }
+
+  @Override
+  public IScreen getScreen() {
+    return this;
+  }
+
+  @Override
+  public IRobot getRobot() {
+    return robot;
+  }
+
+  @Override
+  public Rectangle getBounds() {
+    return bounds;
+  }
+
+  @Override
+  public ScreenImage capture() {
+    return capture(x, y, w, h);
+  }
+
+  @Override
+  public ScreenImage capture(int x, int y, int w, int h) {
+    Rectangle rect = new Rectangle(x, y, w, h).intersection(bounds);
+    if (rect.isEmpty()) {
+      log(-1, "capture: (%d,%d) %dx%d: not on this screen", x, y, w, h);
+      return null;
+    }
+    BufferedImage frame;
+    synchronized (this) {
+      update();
+      frame = frames.get(current);
+    }
+    ScreenImage simg = new ScreenImage(rect,
+            frame.getSubimage(rect.x - bounds.x, rect.y - bounds.y, rect.width, rect.height));
+    lastScreenImage = simg;
+    return simg;
+  }
+
+  @Override
+  public ScreenImage capture(Region reg) {
+    return capture(reg.x, reg.y, reg.w, reg.h);
+  }
+
+  @Override
+  public ScreenImage capture(Rectangle rect) {
+    return capture(rect.x, rect.y, rect.width, rect.height);
+  }
+
+  @Override
+  public void showTarget(Location loc) {
+  }
+
+  @Override
+  public int getID() {
+    return 0;
+  }
+
+  @Override
+  public String getIDString() {
+    return "Virtual";
+  }
+
+  @Override
+  public ScreenImage getLastScreenImageFromScreen() {
+    return lastScreenImage;
+  }
+
+  @Override
+  public ScreenImage userCapture(String msg) {
+    log(-1, "userCapture: not possible");
+    return null;
+  }
+
+  @Override
+  public int getIdFromPoint(int srcx, int srcy) {
+    return 0;
+  }
+  //</editor-fold>
+
+  public Region newRegion(Location loc, int width, int height) {
+    return new Region(loc.x, loc.y, width, height, this);
+  }
+
+  public Region newRegion(int _x, int _y, int width, int height) {
+    return new Region(_x, _y, width, height, this);
+  }
+
+  public Location newLocation(int _x, int _y) {
+    return new Location(_x, _y).setOtherScreen(this);
+  }
+}
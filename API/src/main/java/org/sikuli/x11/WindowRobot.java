@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.x11;
+
+import org.sikuli.script.*;
+
+import java.awt.*;
+
+/**
+ * the robot of a WindowScreen
+ * <p>
+ * the actions are done by the robot of the desktop (the real mouse and keyboard),
+ * mouse positions are given in window coordinates and translated with the actual position of the window<br>
+ * captures and pixel colors are taken from the window (WindowScreen.capture)
+ */
+public class WindowRobot implements IRobot {
+
+  private final WindowScreen screen;
+  private final IRobot desktop;
+
+  public WindowRobot(WindowScreen screen, IRobot desktop) {
+    this.screen = screen;
+    this.desktop = desktop;
+  }
+
+  private Location toDesktop(int x, int y) {
+    Location origin = screen.getOrigin();
+    return new Location(origin.x + x, origin.y + y);
+  }
+
+  private Location toDesktop(Location loc) {
+    return toDesktop(loc.x, loc.y);
+  }
+
+  @Override
+  public boolean isRemote() {
+    return false;
+  }
+
+  @Override
+  public IScreen getScreen() {
+    return screen;
+  }
+
+  @Override
+  public void cleanup() {
+  }
+
+  //<editor-fold desc="key actions">
+  @Override
+  public void keyDown(String keys) {
+    desktop.keyDown(keys);
+  }
+
+  @Override
+  public void keyUp(String keys) {
+    desktop.keyUp(keys);
+  }
+
+  @Override
+  public void keyDown(int code) {
+    desktop.keyDown(code);
+  }
+
+  @Override
+  public void keyUp(int code) {
+    desktop.keyUp(code);
+  }
+
+  @Override
+  public void keyUp() {
+    desktop.keyUp();
+  }
+
+  @Override
+  public void pressModifiers(int modifiers) {
+    desktop.pressModifiers(modifiers);
+  }
+
+  @Override
+  public void releaseModifiers(int modifiers) {
+    desktop.releaseModifiers(modifiers);
+  }
+
+  @Override
+  public void typeChar(char character, KeyMode mode) {
+    desktop.typeChar(character, mode);
+  }
+
+  @Override
+  public void typeKey(int key) {
+    desktop.typeKey(key);
+  }
+
+  @Override
+  public void typeStarts() {
+    desktop.typeStarts();
+  }
+
+  @Override
+  public void typeEnds() {
+    desktop.typeEnds();
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="mouse actions">
+  @Override
+  public void mouseMove(int x, int y) {
+    Location loc = toDesktop(x, y);
+    desktop.mouseMove(loc.x, loc.y);
+  }
+
+  @Override
+  public void mouseDown(int buttons) {
+    desktop.mouseDown(buttons);
+  }
+
+  @Override
+  public int mouseUp(int buttons) {
+    return desktop.mouseUp(buttons);
+  }
+
+  @Override
+  public void mouseReset() {
+    desktop.mouseReset();
+  }
+
+  @Override
+  public void clickStarts() {
+    desktop.clickStarts();
+  }
+
+  @Override
+  public void clickEnds() {
+    desktop.clickEnds();
+  }
+
+  @Override
+  public void smoothMove(Location dest) {
+    desktop.smoothMove(toDesktop(dest));
+  }
+
+  @Override
+  public void smoothMove(Location src, Location dest, long ms) {
+    desktop.smoothMove(toDesktop(src), toDesktop(dest), ms);
+  }
+
+  @Override
+  public void mouseWheel(int wheelAmt) {
+    desktop.mouseWheel(wheelAmt);
+  }
+  //</editor-fold>
+
+  @Override
+  public ScreenImage captureScreen(Rectangle screenRect) {
+    return screen.capture(screenRect);
+  }
+
+  @Override
+  public Color getColorAt(int x, int y) {
+    return screen.getColorAt(x, y);
+  }
+
+  @Override
+  public void waitForIdle() {
+    desktop.waitForIdle();
+  }
+
+  @Override
+  public void delay(int ms) {
+    desktop.delay(ms);
+  }
+
+  @Override
+  public void setAutoDelay(int ms) {
+    desktop.setAutoDelay(ms);
+  }
+}
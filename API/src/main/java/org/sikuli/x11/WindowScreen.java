@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.x11;
+
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Profiler;
+import org.sikuli.natives.LinuxUtil;
+import org.sikuli.natives.OSUtil;
+import org.sikuli.natives.SysUtil;
+import org.sikuli.script.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * a screen, that is one X window (Linux): capture, find, click, ... in window coordinates
+ * <p>
+ * the pixels are read from the window itself and not from the whole screen
+ * (no grab of the root window, no compositing of all the windows above)<br>
+ * with Composite (X server extension, e.g. Xvfb, Xorg) the window is drawn into an offscreen pixmap,
+ * that is read instead, so covered parts of the window are captured correctly<br>
+ * with MIT-SHM the pixels are transferred via a shared memory segment kept for the next capture<br>
+ * mouse and keyboard actions are done with the real mouse and keyboard at the actual position of the window
+ * (the window has to be visible at the click point)
+ * <p>
+ * usage: WindowScreen.start(app) after app.waitForWindow() - stop() when no longer needed
+ */
+public class WindowScreen extends Region implements IScreen {
+
+  static {
+    RunTime.loadLibrary("VisionProxy");
+  }
+
+  private static String me = "WindowScreen: ";
+  private static int lvl = 3;
+
+  private static void log(int level, String message, Object... args) {
+    Debug.logx(level, me + message, args);
+  }
+
+  private static final Profiler.Timer tCapture = Profiler.timer("WindowScreen.capture");
+
+  private final XDisplay display;
+  private final long window;
+  private final XImageReader reader;
+  private final boolean redirected;
+  private long pixmap = 0;
+  private int pixmapWidth = 0;
+  private int pixmapHeight = 0;
+  private final IRobot desktop;
+  private final WindowRobot robot;
+  private ScreenImage lastScreenImage = null;
+
+  //<editor-fold desc="Inits">
+
+  /**
+   * @param app a running app with a window
+   * @return the screen of the first window of the app or null if not possible (see log)
+   */
+  public static WindowScreen start(App app) {
+    return start(app, 0);
+  }
+
+  /**
+   * @param app    a running app with a window
+   * @param winNum which window of the app (0: first)
+   * @return the screen of the window or null if not possible (see log)
+   */
+  public static WindowScreen start(App app, int winNum) {
+    OSUtil osUtil = SysUtil.getOSUtil();
+    if (!(osUtil instanceof LinuxUtil)) {
+      log(-1, "start: only on Linux");
+      return null;
+    }
+    LinuxUtil linuxUtil = (LinuxUtil) osUtil;
+    long id = app.getPID() > 0 ? linuxUtil.getWindowId(app.getPID(), winNum) : -1;
+    if (id < 0) {
+      id = linuxUtil.getWindowId(app.getName(), winNum);
+    }
+    if (id < 0) {
+      log(-1, "start: no window %d for %s", winNum, app.toStringShort());
+      return null;
+    }
+    return start(id);
+  }
+
+  /**
+   * @param windowId the X window id (e.g. from wmctrl -l or xwininfo)
+   * @return the screen or null if not possible (see log)
+   */
+  public static WindowScreen start(long windowId) {
+    try {
+      return new WindowScreen(windowId);
+    } catch (Exception ex) {
+      log(-1, "start: 0x%x: %s", windowId, ex.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * @param windowId the X window id (e.g. from wmctrl -l or xwininfo)
+   */
+  public WindowScreen(long windowId) {
+    super();
+    display = XDisplay.get();
+    if (display == null) {
+      throw new IllegalStateException(me + "X11 not available (64-bit Linux, libX11, DISPLAY)");
+    }
+    XDisplay.Attributes attributes = display.getAttributes(windowId);
+    if (attributes == null) {
+      throw new IllegalArgumentException(String.format(me + "no window 0x%x", windowId));
+    }
+    window = windowId;
+    reader = new XImageReader(display, attributes);
+    redirected = display.redirect(window);
+    setOtherScreen(this);
+    x = 0;
+    y = 0;
+    w = attributes.width;
+    h = attributes.height;
+    desktop = Screen.getPrimaryScreen().getRobot();
+    robot = new WindowRobot(this, desktop);
+    log(lvl, "%s: Composite: %s, MIT-SHM: %s", this, redirected, reader.isShm());
+  }
+
+  /**
+   * releases the offscreen pixmap and the shared memory
+   */
+  public synchronized void stop() {
+    display.freePixmap(pixmap);
+    pixmap = 0;
+    if (redirected) {
+      display.unredirect(window);
+    }
+    reader.close();
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="window">
+
+  /**
+   * @return the X window id
+   */
+  public long getWindowId() {
+    return window;
+  }
+
+  /**
+   * @return the actual position of the window content on the desktop (where 0,0 of this screen is)
+   */
+  public Location getOrigin() {
+    XDisplay.Attributes attributes = display.getAttributes(window);
+    if (attributes == null) {
+      return new Location(0, 0);
+    }
+    return new Location(attributes.x, attributes.y);
+  }
+
+  /**
+   * @return false if the window no longer exists
+   */
+  public boolean isValid() {
+    return display.getAttributes(window) != null;
+  }
+
+  private long getPixmap(XDisplay.Attributes attributes) {
+    if (pixmap != 0 && attributes.width == pixmapWidth && attributes.height == pixmapHeight) {
+      return pixmap;
+    }
+    // a new pixmap after each resize
+    display.freePixmap(pixmap);
+    pixmap = display.namePixmap(window);
+    pixmapWidth = attributes.width;
+    pixmapHeight = attributes.height;
+    return pixmap;
+  }
+
+  Color getColorAt(int colorX, int colorY) {
+    ScreenImage simg = capture(colorX, colorY, 1, 1);
+    return simg == null ? null : new Color(simg.getImage().getRGB(0, 0));
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="Overrides">
+  @Override
+  public String toString() {
+    return String.format("WindowScreen: 0x%x (%d x %d)", window, w, h);
+  }
+
+  @Override
+  public IScreen getScreen() {
+    return this;
+  }
+
+  @Override
+  public IRobot getRobot() {
+    return robot;
+  }
+
+  @Override
+  public Rectangle getBounds() {
+    XDisplay.Attributes attributes = display.getAttributes(window);
+    if (attributes == null) {
+      return new Rectangle(0, 0, w, h);
+    }
+    return new Rectangle(0, 0, attributes.width, attributes.height);
+  }
+
+  @Override
+  public ScreenImage capture() {
+    return capture(getBounds());
+  }
+
+  @Override
+  public synchronized ScreenImage capture(int x, int y, int w, int h) {
+    XDisplay.Attributes attributes = display.getAttributes(window);
+    if (attributes == null) {
+      log(-1, "capture: window 0x%x no longer exists", window);
+      return null;
+    }
+    Rectangle rect = new Rectangle(x, y, w, h).intersection(new Rectangle(0, 0, attributes.width, attributes.height));
+    if (rect.isEmpty()) {
+      log(-1, "capture: (%d,%d) %dx%d: not in this window", x, y, w, h);
+      return null;
+    }
+    if (!attributes.isViewable()) {
+      log(-1, "capture: window 0x%x not viewable (minimized, other desktop)", window);
+      display.freePixmap(pixmap);
+      pixmap = 0;
+      return null;
+    }
+    long start = Profiler.start();
+    BufferedImage img = null;
+    if (redirected && getPixmap(attributes) != 0) {
+      img = reader.read(pixmap, rect.x + attributes.border, rect.y + attributes.border, rect.width, rect.height);
+    }
+    if (img == null) {
+      // without Composite: covered parts are undefined, fails if partly outside the screen
+      img = reader.read(window, rect.x, rect.y, rect.width, rect.height);
+    }
+    if (img == null) {
+      Rectangle onDesktop = new Rectangle(rect);
+      onDesktop.translate(attributes.x, attributes.y);
+      log(lvl + 1, "capture: from the desktop: %s", onDesktop);
+      img = desktop.captureScreen(onDesktop).getImage();
+    }
+    tCapture.stop(start);
+    ScreenImage simg = new ScreenImage(rect, img);
+    lastScreenImage = simg;
+    return simg;
+  }
+
+  @Override
+  public ScreenImage capture(Region reg) {
+    return capture(reg.x, reg.y, reg.w, reg.h);
+  }
+
+  @Override
+  public ScreenImage capture(Rectangle rect) {
+    return capture(rect.x, rect.y, rect.width, rect.height);
+  }
+
+  @Override
+  public void showTarget(Location loc) {
+  }
+
+  @Override
+  public int getID() {
+    return 0;
+  }
+
+  @Override
+  public String getIDString() {
+    return String.format("Window 0x%x", window);
+  }
+
+  @Override
+  public ScreenImage getLastScreenImageFromScreen() {
+    return lastScreenImage;
+  }
+
+  @Override
+  public ScreenImage userCapture(String msg) {
+    log(-1, "userCapture: not possible");
+    return null;
+  }
+
+  @Override
+  public int getIdFromPoint(int srcx, int srcy) {
+    return 0;
+  }
+  //</editor-fold>
+
+  public Region newRegion(Location loc, int width, int height) {
+    return new Region(loc.x, loc.y, width, height, this);
+  }
+
+  public Region newRegion(int _x, int _y, int width, int height) {
+    return new Region(_x, _y, width, height, this);
+  }
+
+  public Location newLocation(int _x, int _y) {
+    return new Location(_x, _y).setOtherScreen(this);
+  }
+}
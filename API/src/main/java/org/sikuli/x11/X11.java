@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.x11;
+
+import org.bridj.BridJ;
+import org.bridj.Callback;
+import org.bridj.Pointer;
+import org.bridj.ann.CLong;
+import org.bridj.ann.Library;
+import org.bridj.ann.Ptr;
+
+/**
+ * INTERNAL USE: direct access to Xlib, some X extensions and the SysV shared memory via BridJ
+ * (as SysJNA for the Windows API)
+ * <p>
+ * only what XDisplay and XImageReader need - the struct offsets are those of the 64-bit Linux ABI
+ */
+public class X11 {
+
+  public static final int ZPixmap = 2;
+  public static final long AllPlanes = -1L;
+  public static final int IsViewable = 2;
+  public static final int CompositeRedirectAutomatic = 0;
+  public static final int XDamageReportNonEmpty = 3;
+
+  public static final int IPC_PRIVATE = 0;
+  public static final int IPC_CREAT = 01000;
+  public static final int IPC_RMID = 0;
+
+  /**
+   * XWindowAttributes: size and the offsets used
+   */
+  static final int ATTRIBUTES_SIZE = 136;
+  static final int ATTR_WIDTH = 8;
+  static final int ATTR_HEIGHT = 12;
+  static final int ATTR_BORDER = 16;
+  static final int ATTR_DEPTH = 20;
+  static final int ATTR_VISUAL = 24;
+  static final int ATTR_MAP_STATE = 92;
+
+  /**
+   * XImage: the offsets used
+   */
+  static final int IMAGE_WIDTH = 0;
+  static final int IMAGE_HEIGHT = 4;
+  static final int IMAGE_DATA = 16;
+  static final int IMAGE_BYTES_PER_LINE = 44;
+  static final int IMAGE_BITS_PER_PIXEL = 48;
+
+  /**
+   * XShmSegmentInfo: size and the offsets used
+   */
+  static final int SHMINFO_SIZE = 32;
+  static final int SHMINFO_SHMID = 8;
+  static final int SHMINFO_SHMADDR = 16;
+  static final int SHMINFO_READONLY = 24;
+
+  /**
+   * XRectangle (short x, y, unsigned short width, height)
+   */
+  static final int RECTANGLE_SIZE = 8;
+
+  /**
+   * XErrorEvent: offset of the error code
+   */
+  static final int ERROR_CODE = 32;
+
+  private X11() {
+  }
+
+  /**
+   * libX11
+   */
+  @Library("X11")
+  public static class Xlib {
+
+    static {
+      BridJ.register();
+    }
+
+    /**
+     * int (*XErrorHandler)(Display*, XErrorEvent*)
+     */
+    public static abstract class XErrorHandler extends Callback<XErrorHandler> {
+      public abstract int apply(Pointer<?> display, Pointer<?> event);
+    }
+
+    public static native Pointer<?> XOpenDisplay(Pointer<Byte> name);
+
+    public static native int XCloseDisplay(Pointer<?> display);
+
+    @CLong
+    public static native long XDefaultRootWindow(Pointer<?> display);
+
+    public static native int XGetWindowAttributes(Pointer<?> display, @CLong long window, Pointer<?> attributes);
+
+    public static native int XTranslateCoordinates(Pointer<?> display, @CLong long srcWindow, @CLong long destWindow,
+                                                   int srcX, int srcY, Pointer<Integer> destX, Pointer<Integer> destY,
+                                                   Pointer<?> child);
+
+    public static native Pointer<?> XGetImage(Pointer<?> display, @CLong long drawable, int x, int y,
+                                              int width, int height, @CLong long planeMask, int format);
+
+    public static native int XDestroyImage(Pointer<?> image);
+
+    public static native int XFreePixmap(Pointer<?> display, @CLong long pixmap);
+
+    public static native int XSync(Pointer<?> display, int discard);
+
+    public static native int XFree(Pointer<?> data);
+
+    public static native Pointer<XErrorHandler> XSetErrorHandler(Pointer<XErrorHandler> handler);
+  }
+
+  /**
+   * libXext: MIT-SHM
+   */
+  @Library("Xext")
+  public static class Xext {
+
+    static {
+      BridJ.register();
+    }
+
+    public static native int XShmQueryExtension(Pointer<?> display);
+
+    public static native Pointer<?> XShmCreateImage(Pointer<?> display, Pointer<?> visual, int depth, int format,
+                                                    Pointer<?> data, Pointer<?> shminfo, int width, int height);
+
+    public static native int XShmAttach(Pointer<?> display, Pointer<?> shminfo);
+
+    public static native int XShmDetach(Pointer<?> display, Pointer<?> shminfo);
+
+    public static native int XShmGetImage(Pointer<?> display, @CLong long drawable, Pointer<?> image,
+                                          int x, int y, @CLong long planeMask);
+  }
+
+  /**
+   * libXcomposite
+   */
+  @Library("Xcomposite")
+  public static class Xcomposite {
+
+    static {
+      BridJ.register();
+    }
+
+    public static native int XCompositeQueryExtension(Pointer<?> display, Pointer<Integer> eventBase,
+                                                      Pointer<Integer> errorBase);
+
+    public static native void XCompositeRedirectWindow(Pointer<?> display, @CLong long window, int update);
+
+    public static native void XCompositeUnredirectWindow(Pointer<?> display, @CLong long window, int update);
+
+    @CLong
+    public static native long XCompositeNameWindowPixmap(Pointer<?> display, @CLong long window);
+  }
+
+  /**
+   * libXdamage
+   */
+  @Library("Xdamage")
+  public static class Xdamage {
+
+    static {
+      BridJ.register();
+    }
+
+    public static native int XDamageQueryExtension(Pointer<?> display, Pointer<Integer> eventBase,
+                                                   Pointer<Integer> errorBase);
+
+    public static native int XDamageQueryVersion(Pointer<?> display, Pointer<Integer> major, Pointer<Integer> minor);
+
+    @CLong
+    public static native long XDamageCreate(Pointer<?> display, @CLong long drawable, int level);
+
+    public static native void XDamageDestroy(Pointer<?> display, @CLong long damage);
+
+    public static native void XDamageSubtract(Pointer<?> display, @CLong long damage, @CLong long repair,
+                                              @CLong long parts);
+  }
+
+  /**
+   * libXfixes: server side regions (for XDamage)
+   */
+  @Library("Xfixes")
+  public static class Xfixes {
+
+    static {
+      BridJ.register();
+    }
+
+    public static native int XFixesQueryExtension(Pointer<?> display, Pointer<Integer> eventBase,
+                                                  Pointer<Integer> errorBase);
+
+    public static native int XFixesQueryVersion(Pointer<?> display, Pointer<Integer> major, Pointer<Integer> minor);
+
+    @CLong
+    public static native long XFixesCreateRegion(Pointer<?> display, Pointer<?> rectangles, int count);
+
+    public static native void XFixesDestroyRegion(Pointer<?> display, @CLong long region);
+
+    public static native Pointer<?> XFixesFetchRegion(Pointer<?> display, @CLong long region, Pointer<Integer> count);
+  }
+
+  /**
+   * libc: SysV shared memory for MIT-SHM
+   */
+  @Library("c")
+  public static class LibC {
+
+    static {
+      BridJ.register();
+    }
+
+    public static native int shmget(int key, @Ptr long size, int flags);
+
+    public static native Pointer<?> shmat(int shmid, Pointer<?> address, int flags);
+
+    public static native int shmdt(Pointer<?> address);
+
+    public static native int shmctl(int shmid, int cmd, Pointer<?> buffer);
+  }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.x11;
+
+import org.bridj.Pointer;
+import org.sikuli.basics.Debug;
+import org.sikuli.script.RunTime;
+
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * INTERNAL USE: an own connection to the X server (not the one of AWT), shared by all X11 features
+ * <p>
+ * available on 64-bit Linux with a display (DISPLAY) and libX11 - MIT-SHM (libXext),
+ * Composite (libXcomposite) and Damage (libXdamage, libXfixes) are used, if the server supports them<br>
+ * X errors of this connection are recorded (takeError()) instead of ending the process,
+ * errors of other connections (AWT) are given to the handler, that was active before<br>
+ * all requests are synchronized on the XDisplay object, events are not used (discarded with each sync)
+ */
+public class XDisplay {
+
+  private static String me = "XDisplay: ";
+  private static int lvl = 3;
+
+  private static void log(int level, String message, Object... args) {
+    Debug.logx(level, me + message, args);
+  }
+
+  private static XDisplay xDisplay = null;
+  private static boolean checked = false;
+
+  private static volatile long ourDisplay = 0;
+  private static volatile int lastError = 0;
+  private static Pointer<X11.Xlib.XErrorHandler> previousHandler = null;
+  private static final X11.Xlib.XErrorHandler errorHandler = new X11.Xlib.XErrorHandler() {
+    @Override
+    public int apply(Pointer<?> display, Pointer<?> event) {
+      if (display != null && display.getPeer() == ourDisplay) {
+        lastError = event.offset(X11.ERROR_CODE).getByte() & 0xff;
+        return 0;
+      }
+      if (previousHandler != null) {
+        return previousHandler.get().apply(display, event);
+      }
+      return 0;
+    }
+  };
+
+  private final Pointer<?> display;
+  private final long root;
+  private boolean hasShm = false;
+  private boolean hasComposite = false;
+  private boolean hasDamage = false;
+  private long damageParts = 0;
+
+  /**
+   * @return the connection or null if not available (see log)
+   */
+  public static synchronized XDisplay get() {
+    if (!checked) {
+      checked = true;
+      try {
+        xDisplay = open();
+      } catch (Throwable ex) {
+        log(-1, "not available: %s", ex);
+      }
+    }
+    return xDisplay;
+  }
+
+  private static XDisplay open() {
+    if (!RunTime.get().runningLinux) {
+      log(lvl, "only on Linux");
+      return null;
+    }
+    if (GraphicsEnvironment.isHeadless()) {
+      log(lvl, "headless: no display");
+      return null;
+    }
+    if (Pointer.SIZE != 8) {
+      log(-1, "only on 64-bit Linux");
+      return null;
+    }
+    // AWT first: its error handler is then the previous one of ours
+    Toolkit.getDefaultToolkit();
+    Pointer<?> display = X11.Xlib.XOpenDisplay(null);
+    if (display == null) {
+      log(-1, "XOpenDisplay failed (DISPLAY=%s)", System.getenv("DISPLAY"));
+      return null;
+    }
+    return new XDisplay(display);
+  }
+
+  private XDisplay(Pointer<?> display) {
+    this.display = display;
+    ourDisplay = display.getPeer();
+    previousHandler = X11.Xlib.XSetErrorHandler(Pointer.getPointer(errorHandler));
+    root = X11.Xlib.XDefaultRootWindow(display);
+    try {
+      hasShm = X11.Xext.XShmQueryExtension(display) != 0;
+    } catch (Throwable ex) {
+      log(lvl, "MIT-SHM not available: %s", ex.getMessage());
+    }
+    try {
+      Pointer<Integer> eventBase = Pointer.allocateInt();
+      Pointer<Integer> errorBase = Pointer.allocateInt();
+      hasComposite = X11.Xcomposite.XCompositeQueryExtension(display, eventBase, errorBase) != 0;
+    } catch (Throwable ex) {
+      log(lvl, "Composite not available: %s", ex.getMessage());
+    }
+    try {
+      Pointer<Integer> eventBase = Pointer.allocateInt();
+      Pointer<Integer> errorBase = Pointer.allocateInt();
+      Pointer<Integer> major = Pointer.allocateInt();
+      Pointer<Integer> minor = Pointer.allocateInt();
+      if (X11.Xfixes.XFixesQueryExtension(display, eventBase, errorBase) != 0
+              && X11.Xdamage.XDamageQueryExtension(display, eventBase, errorBase) != 0) {
+        // the versions have to be negotiated before the first request
+        major.set(5);
+        minor.set(0);
+        X11.Xfixes.XFixesQueryVersion(display, major, minor);
+        major.set(1);
+        minor.set(1);
+        X11.Xdamage.XDamageQueryVersion(display, major, minor);
+        damageParts = X11.Xfixes.XFixesCreateRegion(display, null, 0);
+        hasDamage = sync() == 0 && damageParts != 0;
+      }
+    } catch (Throwable ex) {
+      log(lvl, "Damage not available: %s", ex.getMessage());
+    }
+    log(lvl, "%s: MIT-SHM %s, Composite %s, Damage %s", System.getenv("DISPLAY"), hasShm, hasComposite, hasDamage);
+  }
+
+  Pointer<?> getPointer() {
+    return display;
+  }
+
+  /**
+   * @return the root window (the whole screen)
+   */
+  public long getRoot() {
+    return root;
+  }
+
+  /**
+   * @return true if the server supports MIT-SHM (images are transferred via a shared memory segment)
+   */
+  public boolean hasShm() {
+    return hasShm;
+  }
+
+  /**
+   * @return true if the server supports Composite (contents of covered windows are available)
+   */
+  public boolean hasComposite() {
+    return hasComposite;
+  }
+
+  /**
+   * @return true if the server supports Damage (changed areas of a drawable are reported)
+   */
+  public boolean hasDamage() {
+    return hasDamage;
+  }
+
+  /**
+   * @return the code of the last X error of this connection since the last call (0: none)
+   */
+  synchronized int takeError() {
+    int error = lastError;
+    lastError = 0;
+    return error;
+  }
+
+  /**
+   * waits until all requests are processed by the server
+   *
+   * @return the code of the last X error (0: none)
+   */
+  synchronized int sync() {
+    // discard: the events of this connection are not used (e.g. DamageNotify)
+    X11.Xlib.XSync(display, 1);
+    return takeError();
+  }
+
+  /**
+   * @param window the window id
+   * @return size, position on the root window, depth, visual and map state - null if there is no such window
+   */
+  public synchronized Attributes getAttributes(long window) {
+    takeError();
+    Pointer<?> attributes = Pointer.allocateBytes(X11.ATTRIBUTES_SIZE);
+    if (X11.Xlib.XGetWindowAttributes(display, window, attributes) == 0 || takeError() != 0) {
+      return null;
+    }
+    Pointer<Integer> rootX = Pointer.allocateInt();
+    Pointer<Integer> rootY = Pointer.allocateInt();
+    Pointer<?> child = Pointer.allocateBytes(8);
+    X11.Xlib.XTranslateCoordinates(display, window, root, 0, 0, rootX, rootY, child);
+    if (takeError() != 0) {
+      return null;
+    }
+    return new Attributes(rootX.get(), rootY.get(),
+            attributes.offset(X11.ATTR_WIDTH).getInt(), attributes.offset(X11.ATTR_HEIGHT).getInt(),
+            attributes.offset(X11.ATTR_BORDER).getInt(), attributes.offset(X11.ATTR_DEPTH).getInt(),
+            attributes.getPointerAtOffset(X11.ATTR_VISUAL), attributes.offset(X11.ATTR_MAP_STATE).getInt());
+  }
+
+  /**
+   * the window (and its children) is drawn into an offscreen pixmap (Composite, automatic: still shown on the screen)
+   *
+   * @param window the window id
+   * @return success
+   */
+  public synchronized boolean redirect(long window) {
+    if (!hasComposite) {
+      return false;
+    }
+    X11.Xcomposite.XCompositeRedirectWindow(display, window, X11.CompositeRedirectAutomatic);
+    return sync() == 0;
+  }
+
+  /**
+   * @param window the window id given to redirect() before
+   */
+  public synchronized void unredirect(long window) {
+    if (!hasComposite) {
+      return;
+    }
+    X11.Xcomposite.XCompositeUnredirectWindow(display, window, X11.CompositeRedirectAutomatic);
+    sync();
+  }
+
+  /**
+   * the offscreen pixmap of a redirected window (including the border) - has to be taken again after the
+   * window is resized or mapped again
+   *
+   * @param window the window id given to redirect() before
+   * @return the pixmap (free it with freePixmap) or 0 if not available (e.g. window not viewable)
+   */
+  public synchronized long namePixmap(long window) {
+    if (!hasComposite) {
+      return 0;
+    }
+    takeError();
+    long pixmap = X11.Xcomposite.XCompositeNameWindowPixmap(display, window);
+    if (sync() != 0) {
+      return 0;
+    }
+    return pixmap;
+  }
+
+  /**
+   * @param pixmap from namePixmap
+   */
+  public synchronized void freePixmap(long pixmap) {
+    if (pixmap != 0) {
+      X11.Xlib.XFreePixmap(display, pixmap);
+      sync();
+    }
+  }
+
+  /**
+   * start collecting the changed areas of a drawable
+   *
+   * @param drawable e.g. the root window
+   * @return the damage object for takeDamage and destroyDamage or 0 if not available
+   */
+  public synchronized long createDamage(long drawable) {
+    if (!hasDamage) {
+      return 0;
+    }
+    takeError();
+    long damage = X11.Xdamage.XDamageCreate(display, drawable, X11.XDamageReportNonEmpty);
+    if (sync() != 0) {
+      return 0;
+    }
+    return damage;
+  }
+
+  /**
+   * @param damage from createDamage
+   * @return the areas changed since the last call (since createDamage for the first call),
+   * null if not possible
+   */
+  public synchronized List<Rectangle> takeDamage(long damage) {
+    if (damage == 0) {
+      return null;
+    }
+    takeError();
+    X11.Xdamage.XDamageSubtract(display, damage, 0, damageParts);
+    Pointer<Integer> count = Pointer.allocateInt();
+    Pointer<?> rectangles = X11.Xfixes.XFixesFetchRegion(display, damageParts, count);
+    if (takeError() != 0) {
+      return null;
+    }
+    List<Rectangle> areas = new ArrayList<Rectangle>();
+    if (rectangles != null) {
+      for (int n = 0; n < count.get(); n++) {
+        long offset = (long) n * X11.RECTANGLE_SIZE;
+        areas.add(new Rectangle(rectangles.offset(offset).getShort(), rectangles.offset(offset + 2).getShort(),
+                rectangles.offset(offset + 4).getShort() & 0xffff, rectangles.offset(offset + 6).getShort() & 0xffff));
+      }
+      X11.Xlib.XFree(rectangles);
+    }
+    return areas;
+  }
+
+  /**
+   * @param damage from createDamage
+   */
+  public synchronized void destroyDamage(long damage) {
+    if (damage != 0) {
+      X11.Xdamage.XDamageDestroy(display, damage);
+      sync();
+    }
+  }
+
+  /**
+   * the attributes of a window used here
+   */
+  public static class Attributes {
+    /**
+     * position of the window content on the root window (the screen)
+     */
+    public final int x;
+    public final int y;
+    public final int width;
+    public final int height;
+    public final int border;
+    public final int depth;
+    final Pointer<?> visual;
+    final int mapState;
+
+    Attributes(int x, int y, int width, int height, int border, int depth, Pointer<?> visual, int mapState) {
+      this.x = x;
+      this.y = y;
+      this.width = width;
+      this.height = height;
+      this.border = border;
+      this.depth = depth;
+      this.visual = visual;
+      this.mapState = mapState;
+    }
+
+    /**
+     * @return true if the window is mapped and all its parents are (not minimized, on the actual desktop)
+     */
+    public boolean isViewable() {
+      return mapState == X11.IsViewable;
+    }
+  }
+}
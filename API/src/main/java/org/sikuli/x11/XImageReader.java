@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.x11;
+
+import org.bridj.Pointer;
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Profiler;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+/**
+ * INTERNAL USE: reads the pixels of a rectangle of a drawable (window, pixmap) of an XDisplay
+ * <p>
+ * with MIT-SHM the pixels are transferred via a shared memory segment, that is kept and reused
+ * (only allocated again for a larger rectangle), otherwise via XGetImage over the connection<br>
+ * only for 32 bits per pixel (depth 24 or 32), the result is a BufferedImage (TYPE_INT_RGB)
+ * using the transferred pixels directly or the pixels as BGR bytes (readBGR, ready for OpenCV)
+ */
+public class XImageReader {
+
+  private static String me = "XImageReader: ";
+  private static int lvl = 3;
+
+  private static void log(int level, String message, Object... args) {
+    Debug.logx(level, me + message, args);
+  }
+
+  private static final int[] MASKS = new int[]{0xff0000, 0xff00, 0xff};
+  private static final DirectColorModel RGB = new DirectColorModel(24, MASKS[0], MASKS[1], MASKS[2]);
+
+  private static final Profiler.Timer tRead = Profiler.timer("XImageReader.read");
+
+  private final XDisplay display;
+  private final Pointer<?> visual;
+  private final int depth;
+  private boolean useShm;
+
+  private Pointer<?> shmImage = null;
+  private Pointer<?> shmInfo = null;
+  private Pointer<?> shmAddress = null;
+  private int shmPixels = 0;
+
+  /**
+   * @param display    the connection
+   * @param attributes of a window: visual and depth of the drawables to be read
+   */
+  public XImageReader(XDisplay display, XDisplay.Attributes attributes) {
+    this.display = display;
+    this.visual = attributes.visual;
+    this.depth = attributes.depth;
+    useShm = display.hasShm();
+  }
+
+  /**
+   * @return true if the pixels are transferred via shared memory
+   */
+  public boolean isShm() {
+    return useShm;
+  }
+
+  /**
+   * @param drawable window or pixmap
+   * @param x        left
+   * @param y        top
+   * @param w        width
+   * @param h        height
+   * @return the pixels as image or null, if not possible (rectangle not inside the drawable, not 32 bits per pixel)
+   */
+  public BufferedImage read(long drawable, int x, int y, int w, int h) {
+    int[] pixels = readPixels(drawable, x, y, w, h);
+    if (pixels == null) {
+      return null;
+    }
+    WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(pixels, pixels.length), w, h, w, MASKS, null);
+    return new BufferedImage(RGB, raster, false, null);
+  }
+
+  /**
+   * @param drawable window or pixmap
+   * @param x        left
+   * @param y        top
+   * @param w        width
+   * @param h        height
+   * @return the pixels (0xRRGGBB, row by row) or null, if not possible
+   */
+  public int[] readPixels(long drawable, int x, int y, int w, int h) {
+    if (w < 1 || h < 1) {
+      return null;
+    }
+    int[] pixels = new int[w * h];
+    return transfer(drawable, x, y, w, h, pixels, null) ? pixels : null;
+  }
+
+  /**
+   * @param drawable window or pixmap
+   * @param x        left
+   * @param y        top
+   * @param w        width
+   * @param h        height
+   * @param target   at least w * h * 3 bytes: gets the pixels as blue, green, red - row by row
+   *                 (the layout of a TYPE_3BYTE_BGR image and an OpenCV CV_8UC3 Mat)
+   * @return success
+   */
+  public boolean readBGR(long drawable, int x, int y, int w, int h, byte[] target) {
+    if (w < 1 || h < 1 || target.length < w * h * 3) {
+      return false;
+    }
+    return transfer(drawable, x, y, w, h, null, target);
+  }
+
+  /**
+   * frees the shared memory segment
+   */
+  public void close() {
+    synchronized (display) {
+      freeShm();
+    }
+  }
+
+  private boolean transfer(long drawable, int x, int y, int w, int h, int[] pixels, byte[] bgr) {
+    long start = Profiler.start();
+    boolean success;
+    synchronized (display) {
+      if (useShm && transferShm(drawable, x, y, w, h)) {
+        copy(shmAddress, w * 4, w, h, pixels, bgr);
+        success = true;
+      } else {
+        success = transferImage(drawable, x, y, w, h, pixels, bgr);
+      }
+    }
+    tRead.stop(start);
+    return success;
+  }
+
+  // the transferred pixels are B, G, R, X in memory (32 bits per pixel, little endian)
+  private static void copy(Pointer<?> data, int bytesPerLine, int w, int h, int[] pixels, byte[] bgr) {
+    for (int row = 0; row < h; row++) {
+      long offset = (long) row * bytesPerLine;
+      if (pixels != null) {
+        System.arraycopy(data.offset(offset).getInts(w), 0, pixels, row * w, w);
+        continue;
+      }
+      byte[] bgrx = data.offset(offset).getBytes(w * 4);
+      int target = row * w * 3;
+      for (int source = 0; source < bgrx.length; source += 4) {
+        bgr[target++] = bgrx[source];
+        bgr[target++] = bgrx[source + 1];
+        bgr[target++] = bgrx[source + 2];
+      }
+    }
+  }
+
+  private boolean transferShm(long drawable, int x, int y, int w, int h) {
+    if (w * h > shmPixels && !allocateShm(w, h)) {
+      return false;
+    }
+    // the segment is large enough: the image is only told the actual size
+    shmImage.offset(X11.IMAGE_WIDTH).setInt(w);
+    shmImage.offset(X11.IMAGE_HEIGHT).setInt(h);
+    shmImage.offset(X11.IMAGE_BYTES_PER_LINE).setInt(w * 4);
+    display.takeError();
+    if (X11.Xext.XShmGetImage(display.getPointer(), drawable, shmImage, x, y, X11.AllPlanes) == 0
+            || display.takeError() != 0) {
+      log(lvl + 1, "XShmGetImage failed: (%d,%d) %dx%d", x, y, w, h);
+      return false;
+    }
+    return true;
+  }
+
+  private boolean allocateShm(int w, int h) {
+    freeShm();
+    Pointer<?> dpy = display.getPointer();
+    shmInfo = Pointer.allocateBytes(X11.SHMINFO_SIZE);
+    shmImage = X11.Xext.XShmCreateImage(dpy, visual, depth, X11.ZPixmap, null, shmInfo, w, h);
+    if (shmImage == null || shmImage.offset(X11.IMAGE_BITS_PER_PIXEL).getInt() != 32) {
+      log(lvl, "MIT-SHM: no 32 bits per pixel image for depth %d: not used", depth);
+      freeShm();
+      useShm = false;
+      return false;
+    }
+    long size = (long) shmImage.offset(X11.IMAGE_BYTES_PER_LINE).getInt() * h;
+    int shmId = X11.LibC.shmget(X11.IPC_PRIVATE, size, X11.IPC_CREAT | 0600);
+    if (shmId < 0) {
+      log(-1, "MIT-SHM: shmget failed (%d bytes): not used", size);
+      freeShm();
+      useShm = false;
+      return false;
+    }
+    Pointer<?> address = X11.LibC.shmat(shmId, null, 0);
+    if (address == null || address.getPeer() == -1) {
+      log(-1, "MIT-SHM: shmat failed: not used");
+      X11.LibC.shmctl(shmId, X11.IPC_RMID, null);
+      freeShm();
+      useShm = false;
+      return false;
+    }
+    shmAddress = address;
+    shmInfo.offset(X11.SHMINFO_SHMID).setInt(shmId);
+    shmInfo.setPointerAtOffset(X11.SHMINFO_SHMADDR, address);
+    shmInfo.offset(X11.SHMINFO_READONLY).setInt(0);
+    shmImage.setPointerAtOffset(X11.IMAGE_DATA, address);
+    X11.Xext.XShmAttach(dpy, shmInfo);
+    int error = display.sync();
+    // removed as soon as both sides have detached (also if the process dies)
+    X11.LibC.shmctl(shmId, X11.IPC_RMID, null);
+    if (error != 0) {
+      log(-1, "MIT-SHM: XShmAttach failed (X error %d, remote display?): not used", error);
+      X11.LibC.shmdt(address);
+      shmAddress = null;
+      freeShm();
+      useShm = false;
+      return false;
+    }
+    shmPixels = w * h;
+    log(lvl + 1, "MIT-SHM: segment for %dx%d (%d bytes)", w, h, size);
+    return true;
+  }
+
+  private void freeShm() {
+    Pointer<?> dpy = display.getPointer();
+    if (shmAddress != null) {
+      X11.Xext.XShmDetach(dpy, shmInfo);
+      display.sync();
+      X11.LibC.shmdt(shmAddress);
+      shmAddress = null;
+    }
+    if (shmImage != null) {
+      // the destroy function of a shared memory image does not free the data
+      X11.Xlib.XDestroyImage(shmImage);
+      shmImage = null;
+    }
+    shmInfo = null;
+    shmPixels = 0;
+  }
+
+  private boolean transferImage(long drawable, int x, int y, int w, int h, int[] pixels, byte[] bgr) {
+    display.takeError();
+    Pointer<?> image = X11.Xlib.XGetImage(display.getPointer(), drawable, x, y, w, h, X11.AllPlanes, X11.ZPixmap);
+    if (display.takeError() != 0 || image == null) {
+      log(lvl + 1, "XGetImage failed: (%d,%d) %dx%d", x, y, w, h);
+      return false;
+    }
+    try {
+      if (image.offset(X11.IMAGE_BITS_PER_PIXEL).getInt() != 32) {
+        log(-1, "XGetImage: only 32 bits per pixel supported (depth %d)", depth);
+        return false;
+      }
+      copy(image.getPointerAtOffset(X11.IMAGE_DATA), image.offset(X11.IMAGE_BYTES_PER_LINE).getInt(),
+              w, h, pixels, bgr);
+      return true;
+    } finally {
+      X11.Xlib.XDestroyImage(image);
+    }
+  }
+}
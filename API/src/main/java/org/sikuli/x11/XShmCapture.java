@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.x11;
+
+import org.sikuli.basics.Debug;
+import org.sikuli.script.ICaptureProvider;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * the capture provider "xshm" (Settings.CaptureProvider): reads the root window of the X server
+ * <p>
+ * the pixels are transferred via one shared memory segment (MIT-SHM), that is kept for the next capture
+ * (only allocated again for a larger area) - without MIT-SHM (e.g. remote display) via XGetImage<br>
+ * the image is TYPE_3BYTE_BGR: converted to an OpenCV Mat without a further conversion<br>
+ * with XDamage the changed areas of the screen are collected between the captures (getChanges())
+ */
+public class XShmCapture implements ICaptureProvider {
+
+  private static String me = "XShmCapture: ";
+  private static int lvl = 3;
+
+  private static void log(int level, String message, Object... args) {
+    Debug.logx(level, me + message, args);
+  }
+
+  private final XDisplay display;
+  private final XImageReader reader;
+  private final long damage;
+  private List<Rectangle> changes = null;
+
+  /**
+   * @return the provider or null if not available (see log)
+   */
+  public static XShmCapture start() {
+    try {
+      XDisplay display = XDisplay.get();
+      if (display == null) {
+        return null;
+      }
+      XDisplay.Attributes root = display.getAttributes(display.getRoot());
+      if (root == null) {
+        log(-1, "start: root window not accessible");
+        return null;
+      }
+      return new XShmCapture(display, root);
+    } catch (Throwable ex) {
+      log(-1, "start: not possible: %s", ex);
+      return null;
+    }
+  }
+
+  private XShmCapture(XDisplay display, XDisplay.Attributes root) {
+    this.display = display;
+    reader = new XImageReader(display, root);
+    damage = display.createDamage(display.getRoot());
+    log(lvl, "started: %dx%d, MIT-SHM: %s, XDamage: %s", root.width, root.height, reader.isShm(), damage != 0);
+  }
+
+  @Override
+  public String getName() {
+    return "xshm";
+  }
+
+  @Override
+  public BufferedImage capture(Rectangle rect) {
+    // taken before the pixels: a change meanwhile is reported again with the next capture
+    List<Rectangle> damaged = display.takeDamage(damage);
+    BufferedImage img = new BufferedImage(rect.width, rect.height, BufferedImage.TYPE_3BYTE_BGR);
+    byte[] bgr = ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+    if (!reader.readBGR(display.getRoot(), rect.x, rect.y, rect.width, rect.height, bgr)) {
+      // e.g. partly outside the screen: java.awt.Robot fills with black
+      return null;
+    }
+    synchronized (this) {
+      changes = damaged;
+    }
+    return img;
+  }
+
+  @Override
+  public synchronized List<Rectangle> getChanges() {
+    return changes == null ? null : new ArrayList<Rectangle>(changes);
+  }
+
+  @Override
+  public void close() {
+    display.destroyDamage(damage);
+    reader.close();
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.benchmarks;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * the stored inputs of the find benchmarks: screenshots and probes - no live screen needed
+ * <p>
+ * folder: -Dsikulix.benchmark.images=path (default: benchmark-images in the working folder)<br>
+ * files (W x H screen size, S probe size):<br>
+ * screen_WxH.png - a screenshot<br>
+ * screen_WxH_changed.png - the same with some changed areas (change detection)<br>
+ * probe_WxH_S.png - a S x S part of the screenshot (appears once)<br>
+ * many_WxH_S.png - a screenshot containing the probe many times (findAll)<br>
+ * missing files are generated (reproducible: fixed random seed), existing files are used as is,
+ * so real screenshots and probes can be put there
+ */
+public class BenchmarkImages {
+
+  public static final String FOLDER_PROPERTY = "sikulix.benchmark.images";
+
+  /**
+   * number of probe copies on the many_ screenshots
+   */
+  public static final int MANY_COUNT = 40;
+
+  /**
+   * the maximum probe size
+   */
+  public static final int TARGET_SIZE = 256;
+
+  private static File getFolder() {
+    File folder = new File(System.getProperty(FOLDER_PROPERTY, "benchmark-images"));
+    folder.mkdirs();
+    return folder;
+  }
+
+  /**
+   * @param size WxH (e.g. 1920x1080)
+   * @return width and height
+   */
+  public static int[] parseSize(String size) {
+    String[] parts = size.toLowerCase().split("x");
+    return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+  }
+
+  public static BufferedImage getScreen(String size) throws IOException {
+    File file = new File(getFolder(), "screen_" + size + ".png");
+    if (!file.exists()) {
+      int[] wh = parseSize(size);
+      ImageIO.write(createScreen(wh[0], wh[1], size.hashCode()), "png", file);
+    }
+    return ImageIO.read(file);
+  }
+
+  public static BufferedImage getScreenChanged(String size) throws IOException {
+    File file = new File(getFolder(), "screen_" + size + "_changed.png");
+    if (!file.exists()) {
+      BufferedImage screen = copy(getScreen(size));
+      Graphics2D g = screen.createGraphics();
+      Random random = new Random(size.hashCode() + 1);
+      for (int n = 0; n < 5; n++) {
+        g.setColor(new Color(random.nextInt(0x1000000)));
+        g.fillRect(random.nextInt(screen.getWidth() - 200), random.nextInt(screen.getHeight() - 100),
+                20 + random.nextInt(180), 10 + random.nextInt(90));
+      }
+      g.dispose();
+      ImageIO.write(screen, "png", file);
+    }
+    return ImageIO.read(file);
+  }
+
+  public static BufferedImage getProbe(String size, int probeSize) throws IOException {
+    File file = new File(getFolder(), "probe_" + size + "_" + probeSize + ".png");
+    if (!file.exists()) {
+      BufferedImage screen = getScreen(size);
+      int x = screen.getWidth() * 2 / 3 - probeSize / 2;
+      int y = screen.getHeight() / 3 - probeSize / 2;
+      ImageIO.write(copy(screen.getSubimage(x, y, probeSize, probeSize)), "png", file);
+    }
+    return ImageIO.read(file);
+  }
+
+  public static BufferedImage getScreenMany(String size, int probeSize) throws IOException {
+    File file = new File(getFolder(), "many_" + size + "_" + probeSize + ".png");
+    if (!file.exists()) {
+      BufferedImage screen = copy(getScreen(size));
+      BufferedImage probe = getProbe(size, probeSize);
+      Graphics2D g = screen.createGraphics();
+      int columns = Math.max(1, screen.getWidth() / (probeSize * 2));
+      for (int n = 0; n < MANY_COUNT; n++) {
+        int x = (n % columns) * probeSize * 2;
+        int y = (n / columns) * probeSize * 2;
+        if (y + probeSize > screen.getHeight()) {
+          break;
+        }
+        g.drawImage(probe, x, y, null);
+      }
+      g.dispose();
+      ImageIO.write(screen, "png", file);
+    }
+    return ImageIO.read(file);
+  }
+
+  private static BufferedImage copy(BufferedImage image) {
+    BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = copy.createGraphics();
+    g.drawImage(image, 0, 0, null);
+    g.dispose();
+    return copy;
+  }
+
+  /**
+   * something like a desktop: windows with title bars, buttons and text
+   */
+  private static BufferedImage createScreen(int width, int height, long seed) {
+    Random random = new Random(seed);
+    BufferedImage screen = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = screen.createGraphics();
+    g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+    g.setColor(new Color(58, 110, 165));
+    g.fillRect(0, 0, width, height);
+    g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+    for (int window = 0; window < 12; window++) {
+      int w = 200 + random.nextInt(Math.max(1, width / 2));
+      int h = 150 + random.nextInt(Math.max(1, height / 2));
+      int x = random.nextInt(Math.max(1, width - w));
+      int y = random.nextInt(Math.max(1, height - h));
+      g.setColor(new Color(230 + random.nextInt(25), 230 + random.nextInt(25), 230 + random.nextInt(25)));
+      g.fillRect(x, y, w, h);
+      g.setColor(new Color(random.nextInt(0x1000000)));
+      g.fillRect(x, y, w, 22);
+      g.setColor(Color.WHITE);
+      g.drawString("Window " + window, x + 8, y + 16);
+      for (int item = 0; item < h / 30; item++) {
+        int iy = y + 30 + item * 28;
+        g.setColor(new Color(random.nextInt(0x1000000)));
+        g.fillRoundRect(x + 10, iy, 24, 20, 6, 6);
+        g.setColor(Color.DARK_GRAY);
+        g.drawString("Item " + random.nextInt(100000), x + 42, iy + 15);
+      }
+    }
+    // the unique target, where the probes are taken from: blocks of random colors
+    int tx = width * 2 / 3 - TARGET_SIZE / 2;
+    int ty = height / 3 - TARGET_SIZE / 2;
+    for (int bx = 0; bx < TARGET_SIZE; bx += 8) {
+      for (int by = 0; by < TARGET_SIZE; by += 8) {
+        g.setColor(new Color(random.nextInt(0x1000000)));
+        g.fillRect(tx + bx, ty + by, 8, 8);
+      }
+    }
+    g.dispose();
+    return screen;
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opencv.core.Mat;
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Settings;
+import org.sikuli.script.Image;
+import org.sikuli.script.RobotDesktop;
+import org.sikuli.script.RunTime;
+import org.sikuli.script.ScreenImage;
+
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * screen capture with java.awt.Robot (awt) against MIT-SHM (xshm, Settings.CaptureProvider)
+ * <p>
+ * capture: RobotDesktop.captureScreen<br>
+ * captureMat: the same plus the conversion to an OpenCV Mat (as done for each search by the Observer and ImageFinder)
+ * <p>
+ * needs a display, e.g. under Xvfb: xvfb-run -s "-screen 0 1920x1080x24" java -jar benchmarks.jar CaptureBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CaptureBenchmark {
+
+  @Param({"awt", "xshm"})
+  public String provider;
+
+  @Param({"full", "640x480"})
+  public String area;
+
+  private RobotDesktop robot;
+  private Rectangle rect;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    if (GraphicsEnvironment.isHeadless()) {
+      throw new IllegalStateException("CaptureBenchmark: needs a display (e.g. Xvfb)");
+    }
+    Debug.setDebugLevel(0);
+    RunTime.loadLibrary("VisionProxy");
+    Settings.CaptureProvider = provider;
+    if (!"awt".equals(provider) && RobotDesktop.getCaptureProvider() == null) {
+      throw new IllegalStateException("CaptureBenchmark: capture provider not available: " + provider);
+    }
+    robot = new RobotDesktop();
+    if ("full".equals(area)) {
+      rect = new Rectangle(Toolkit.getDefaultToolkit().getScreenSize());
+    } else {
+      int[] size = BenchmarkImages.parseSize(area);
+      rect = new Rectangle(0, 0, size[0], size[1]);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    Settings.CaptureProvider = "awt";
+    RobotDesktop.getCaptureProvider();
+  }
+
+  @Benchmark
+  public ScreenImage capture() {
+    return robot.captureScreen(rect);
+  }
+
+  @Benchmark
+  public Mat captureMat() {
+    return new Image(robot.captureScreen(rect).getImage()).getMat();
+  }
+}
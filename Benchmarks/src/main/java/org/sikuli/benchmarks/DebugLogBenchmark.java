@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Settings;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * contention of Debug logging: many threads logging at the same time (like observers and RunServer clients)
+ * <p>
+ * sync: the calling thread writes (lock on the output)<br>
+ * async: the calling thread only queues the formatted line (Debug.setAsync(true))<br>
+ * logOff measures a call, that is filtered by the level check (nothing formatted)
+ * <p>
+ * the lines go to a logfile in the temp folder, so the console does not limit the throughput
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DebugLogBenchmark {
+
+  @Param({"sync", "async"})
+  public String mode;
+
+  private File logFile;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    logFile = File.createTempFile("SikulixBenchmark", ".txt");
+    Debug.setLogFile(logFile.getAbsolutePath());
+    Debug.setDebugLevel(3);
+    Settings.LogTime = true;
+    Debug.setAsync("async".equals(mode));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    Debug.flush();
+    Debug.setAsync(false);
+    Debug.setDebugLevel(0);
+    logFile.delete();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public String logSingle() {
+    return Debug.logx(3, "Benchmark: %s: find %d", "image.png", 42);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public String logContended() {
+    return Debug.logx(3, "Benchmark: %s: find %d", "image.png", 42);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public String logOff() {
+    return Debug.logx(4, "Benchmark: %s: find %d", "image.png", 42);
+  }
+}
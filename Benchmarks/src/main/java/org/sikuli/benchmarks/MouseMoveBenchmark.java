@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Settings;
+import org.sikuli.script.Location;
+import org.sikuli.script.RobotDesktop;
+
+import java.awt.GraphicsEnvironment;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU usage of RobotDesktop.smoothMove (a move of MOVE_MSEC): as many mouse moves as possible
+ * (rate 0, as before) against a fixed rate (Settings.MoveMouseRate, parkNanos between the moves)
+ * <p>
+ * the time per move is the same, compare cpuMicros: the CPU time of the moving thread per iteration<br>
+ * needs a display, e.g. under Xvfb: xvfb-run -s "-screen 0 1920x1080x24" java -jar benchmarks.jar MouseMoveBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MouseMoveBenchmark {
+
+  private static final long MOVE_MSEC = 250;
+  private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+  @Param({"0", "60", "120"})
+  public int rate;
+
+  private RobotDesktop robot;
+  private Location left = new Location(100, 100);
+  private Location right = new Location(700, 500);
+  private boolean toRight = true;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Cpu {
+    public long cpuMicros;
+  }
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    if (GraphicsEnvironment.isHeadless()) {
+      throw new IllegalStateException("MouseMoveBenchmark: needs a display (e.g. Xvfb)");
+    }
+    Debug.setDebugLevel(0);
+    Settings.MoveMouseRate = rate;
+    Settings.MoveMouseAsync = false;
+    robot = new RobotDesktop();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    Settings.MoveMouseRate = 120;
+  }
+
+  @Benchmark
+  public void smoothMove(Cpu cpu) {
+    long start = threads.getCurrentThreadCpuTime();
+    if (toRight) {
+      robot.smoothMove(left, right, MOVE_MSEC);
+    } else {
+      robot.smoothMove(right, left, MOVE_MSEC);
+    }
+    toRight = !toRight;
+    cpu.cpuMicros += (threads.getCurrentThreadCpuTime() - start) / 1000L;
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Settings;
+import org.sikuli.script.Finder;
+import org.sikuli.script.RunTime;
+import org.sikuli.script.TextRecognizer;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * throughput of the OCR (TextRecognizer with its engine pool) on parts of the stored screenshots (BenchmarkImages)
+ * <p>
+ * each call reads the next part of the corpus - single: one thread, parallel: as many threads as cores
+ * (the difference shows, what the pool and the work outside the lease gain)<br>
+ * needs the tessdata (as for Region.text())
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class OcrBenchmark {
+
+  private static final String[] SCREENS = {"1024x768", "1920x1080"};
+  private static final int PART_WIDTH = 400;
+  private static final int PART_HEIGHT = 240;
+
+  private List<BufferedImage> corpus;
+  private TextRecognizer recognizer;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next = 0;
+  }
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    Debug.setDebugLevel(0);
+    RunTime.loadLibrary("VisionProxy");
+    Settings.OcrTextRead = true;
+    Settings.OcrTextSearch = true;
+    recognizer = TextRecognizer.getInstance();
+    if (recognizer == null) {
+      throw new IllegalStateException("OcrBenchmark: TextRecognizer not available (tessdata)");
+    }
+    corpus = new ArrayList<>();
+    for (String size : SCREENS) {
+      BufferedImage screen = BenchmarkImages.getScreen(size);
+      for (int y = 0; y + PART_HEIGHT <= screen.getHeight(); y += PART_HEIGHT) {
+        for (int x = 0; x + PART_WIDTH <= screen.getWidth(); x += PART_WIDTH) {
+          corpus.add(screen.getSubimage(x, y, PART_WIDTH, PART_HEIGHT));
+        }
+      }
+    }
+  }
+
+  private BufferedImage next(Cursor cursor) {
+    BufferedImage part = corpus.get(cursor.next);
+    cursor.next = (cursor.next + 1) % corpus.size();
+    return part;
+  }
+
+  @Benchmark
+  @Threads(1)
+  public String recognizeSingle(Cursor cursor) {
+    return recognizer.recognize(next(cursor));
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public String recognizeParallel(Cursor cursor) {
+    return recognizer.recognize(next(cursor));
+  }
+
+  @Benchmark
+  @Threads(1)
+  public boolean findTextSingle(Cursor cursor) {
+    return findText(next(cursor));
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public boolean findTextParallel(Cursor cursor) {
+    return findText(next(cursor));
+  }
+
+  private boolean findText(BufferedImage part) {
+    Finder finder = new Finder(part);
+    try {
+      finder.findText("Item");
+      return finder.hasNext();
+    } finally {
+      finder.destroy();
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.FileManager;
+import org.sikuli.script.RunTime;
+import org.sikuli.script.Runner;
+
+import javax.script.ScriptEngine;
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the startup cost per script of a multi-script run with SCRIPTS trivial scripts
+ * <p>
+ * mode session: Runner.runAll (as with -r a b c ...) with option runsession: the interpreters are kept
+ * and only the state of a script is removed after its run<br>
+ * mode fresh: each script gets a new interpreter with the SikuliX setup
+ * (JavaScript: a new engine with the prolog, Python: a new PythonInterpreter with from sikuli import *)<br>
+ * the time is for all scripts: divide by SCRIPTS for the cost per script<br>
+ * lang js needs nothing else, lang py needs a Jython on the classpath: -p lang=js,py
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RunScriptsBenchmark {
+
+  private static final int SCRIPTS = 20;
+
+  @Param({"js"})
+  public String lang;
+
+  @Param({"session", "fresh"})
+  public String mode;
+
+  private File folder;
+  private String[] scripts;
+  private String[] files;
+  private Class<?> pyInterpreter;
+  private Method pyExec;
+  private Method pyExecfile;
+  private Method pyCleanup;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    Debug.setDebugLevel(0);
+    folder = File.createTempFile("SikulixBenchmark", "");
+    folder.delete();
+    scripts = new String[SCRIPTS];
+    files = new String[SCRIPTS];
+    for (int n = 0; n < SCRIPTS; n++) {
+      String name = "trivial" + n;
+      File bundle = new File(folder, name + ".sikuli");
+      bundle.mkdirs();
+      String code = "js".equals(lang) ? "var value" + n + " = " + n + ";\n" : "value" + n + " = " + n + "\n";
+      File file = new File(bundle, name + "." + lang);
+      FileManager.writeStringToFile(code, file);
+      scripts[n] = bundle.getAbsolutePath();
+      files[n] = file.getAbsolutePath();
+    }
+    if ("py".equals(lang)) {
+      pyInterpreter = Class.forName("org.python.util.PythonInterpreter");
+      pyExec = pyInterpreter.getMethod("exec", String.class);
+      pyExecfile = pyInterpreter.getMethod("execfile", String.class);
+      pyCleanup = pyInterpreter.getMethod("cleanup");
+    }
+    RunTime.get().setOption("runsession", "session".equals(mode) ? "yes" : "no");
+    // the first start of the interpreter (class loading) is not part of the measurement
+    Runner.runAll(new String[]{scripts[0]}, new String[0], false);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    FileManager.deleteFileOrFolder(folder);
+  }
+
+  @Benchmark
+  public int runScripts() throws Exception {
+    if ("fresh".equals(mode)) {
+      for (String file : files) {
+        runFresh(file);
+      }
+      return 0;
+    }
+    return Runner.runAll(scripts, new String[0], false);
+  }
+
+  private void runFresh(String file) throws Exception {
+    if ("js".equals(lang)) {
+      ScriptEngine engine = Runner.initjs();
+      engine.eval(Runner.prologjs(Runner.prologjs("")));
+      Reader script = new FileReader(file);
+      try {
+        engine.eval(script);
+      } finally {
+        script.close();
+      }
+    } else {
+      Object interpreter = pyInterpreter.newInstance();
+      try {
+        pyExec.invoke(interpreter, "import org.sikuli.script.SikulixForJython");
+        pyExec.invoke(interpreter, "from sikuli import *");
+        pyExecfile.invoke(interpreter, file);
+      } finally {
+        pyCleanup.invoke(interpreter);
+      }
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Settings;
+import org.sikuli.script.Finder;
+import org.sikuli.script.Match;
+import org.sikuli.script.RunTime;
+import org.sikuli.script.TextDetector;
+import org.sikuli.script.TextRecognizer;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * text search on the stored screenshots (BenchmarkImages): OCR of the whole image against
+ * OCR only in the boxes of the TextDetector (Settings.OcrTextDetection)
+ * <p>
+ * latency: findAllTextFull, findAllTextBoxes and detect (only the pre-pass)<br>
+ * recall: printed at setup - the part of the words found in the whole image, that are found with the boxes too
+ * (a match at an overlapping position)<br>
+ * needs the tessdata (as for Region.text())
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TextDetectionBenchmark {
+
+  @Param({"1024x768", "1920x1080"})
+  public String screenSize;
+
+  @Param({"Item", "Window"})
+  public String text;
+
+  private BufferedImage screen;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    Debug.setDebugLevel(0);
+    RunTime.loadLibrary("VisionProxy");
+    Settings.OcrTextRead = true;
+    Settings.OcrTextSearch = true;
+    Settings.OcrCacheSize = 0;
+    if (TextRecognizer.getInstance() == null) {
+      throw new IllegalStateException("TextDetectionBenchmark: TextRecognizer not available (tessdata)");
+    }
+    screen = BenchmarkImages.getScreen(screenSize);
+    List<Match> full = findAllText(false);
+    List<Match> boxed = findAllText(true);
+    int recalled = 0;
+    for (Match match : full) {
+      for (Match other : boxed) {
+        if (match.getRect().intersects(other.getRect())) {
+          recalled++;
+          break;
+        }
+      }
+    }
+    System.out.println(String.format("TextDetectionBenchmark: %s: %s: %d boxes, full: %d found, boxes: %d found,"
+                    + " recall %.3f", screenSize, text, TextDetector.detect(screen).size(), full.size(), boxed.size(),
+            full.isEmpty() ? 1.0 : recalled / (double) full.size()));
+  }
+
+  private List<Match> findAllText(boolean detection) {
+    Settings.OcrTextDetection = detection;
+    Finder finder = new Finder(screen);
+    List<Match> matches = new ArrayList<>();
+    try {
+      finder.findAllText(text);
+      while (finder.hasNext()) {
+        matches.add(finder.next());
+      }
+    } finally {
+      finder.destroy();
+    }
+    return matches;
+  }
+
+  @Benchmark
+  public List<Match> findAllTextFull() {
+    return findAllText(false);
+  }
+
+  @Benchmark
+  public List<Match> findAllTextBoxes() {
+    return findAllText(true);
+  }
+
+  @Benchmark
+  public List<Rectangle> detect() {
+    return TextDetector.detect(screen);
+  }
+}
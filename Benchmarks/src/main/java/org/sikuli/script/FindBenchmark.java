@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2010-2017, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.script;
+
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sikuli.basics.Debug;
+import org.sikuli.benchmarks.BenchmarkImages;
+import org.sikuli.natives.FindInput;
+import org.sikuli.natives.FindResults;
+import org.sikuli.natives.Vision;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the find pipeline on stored screenshots and probes (BenchmarkImages) for a matrix of screen and probe sizes
+ * <p>
+ * in package org.sikuli.script to have access to the internal steps (Image.createMat, ImageFinder(Mat))<br>
+ * createMat: BufferedImage to OpenCV Mat (done for each capture)<br>
+ * imageFindDownsampled / imageFindFull: ImageFinder (new pipeline) with and without the downsampling step<br>
+ * finderFind: legacy Finder (probe conversion and native find), visionFind: only the native find<br>
+ * changes: the change detection of the Observer (Vision.findChanges) and ImageFinder.hasChanges<br>
+ * findAllMany: findAll on a screenshot containing the probe many times (legacy and new)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FindBenchmark {
+
+  @Param({"1024x768", "1920x1080", "2560x1440"})
+  public String screenSize;
+
+  @Param({"24", "64", "160"})
+  public int probeSize;
+
+  private BufferedImage screen;
+  private BufferedImage screenChanged;
+  private BufferedImage screenMany;
+  private Image probe;
+  private Mat screenMat;
+  private Mat screenChangedMat;
+  private Mat screenManyMat;
+  private Mat probeMat;
+  private Finder finder;
+  private Finder finderMany;
+  private FindInput findInput;
+  private FindInput changesInput;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    Debug.setDebugLevel(0);
+    RunTime.loadLibrary("VisionProxy");
+    screen = BenchmarkImages.getScreen(screenSize);
+    screenChanged = BenchmarkImages.getScreenChanged(screenSize);
+    screenMany = BenchmarkImages.getScreenMany(screenSize, probeSize);
+    BufferedImage probeImage = BenchmarkImages.getProbe(screenSize, probeSize);
+    probe = new Image(probeImage, "probe" + probeSize);
+    screenMat = Image.createMat(screen);
+    screenChangedMat = Image.createMat(screenChanged);
+    screenManyMat = Image.createMat(screenMany);
+    probeMat = Image.createMat(probeImage);
+    finder = new Finder(screen);
+    finderMany = new Finder(screenMany);
+    findInput = new FindInput();
+    findInput.setSource(Image.convertBufferedImageToMat(screen));
+    findInput.setTarget(Image.convertBufferedImageToMat(probeImage));
+    findInput.setSimilarity(0.7);
+    changesInput = new FindInput();
+    changesInput.setSource(Image.convertBufferedImageToMat(screen));
+    changesInput.setTarget(Image.convertBufferedImageToMat(screenChanged));
+    changesInput.setSimilarity(50);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    finder.destroy();
+    finderMany.destroy();
+    findInput.delete();
+    changesInput.delete();
+  }
+
+  @Benchmark
+  public Mat createMat() {
+    return Image.createMat(screen);
+  }
+
+  @Benchmark
+  public Match imageFindDownsampled() {
+    return new ImageFinder(screenMat).search(probeMat).get();
+  }
+
+  @Benchmark
+  public Match imageFindFull() {
+    return new ImageFinder(screenMat).findInner(probeMat, 0.7).get();
+  }
+
+  @Benchmark
+  public Match finderFind() {
+    finder.find(probe);
+    return finder.hasNext() ? finder.next() : null;
+  }
+
+  @Benchmark
+  public long visionFind() {
+    FindResults results = Vision.find(findInput);
+    long size = results.size();
+    results.delete();
+    return size;
+  }
+
+  @Benchmark
+  public long changesVision() {
+    FindResults results = Vision.findChanges(changesInput);
+    long size = results.size();
+    results.delete();
+    return size;
+  }
+
+  @Benchmark
+  public boolean changesImageFinder() {
+    ImageFinder imageFinder = new ImageFinder(screenMat);
+    imageFinder.setMinChanges(50);
+    return imageFinder.hasChanges(screenChangedMat);
+  }
+
+  @Benchmark
+  public int findAllManyFinder() {
+    finderMany.findAll(probe);
+    int count = 0;
+    while (finderMany.hasNext()) {
+      finderMany.next();
+      count++;
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int findAllManyImageFinder() {
+    ImageFind found = new ImageFinder(screenManyMat).searchAll(probeMat);
+    return found == null ? 0 : found.getSize();
+  }
+}
@@ -3,6 +3,7 @@
  */
 package org.sikuli.scriptrunner;
 
+import org.sikuli.util.JythonCodeCache;
 import org.sikuli.util.JythonHelper;
 import java.io.File;
 import java.io.InputStream;
@@ -14,6 +15,7 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import org.python.core.PyCode;
 import org.python.core.PyList;
 import org.python.util.PythonInterpreter;
 import org.python.util.jython;
@@ -186,10 +188,13 @@ public class JythonScriptRunner implements IScriptRunner {
     String stmt = "";
     try {
       if (scriptPaths != null) {
-// TODO implement compile only
+        JythonCodeCache cache = JythonCodeCache.get();
         if (isCompileOnly) {
           log(lvl, "runPython: running COMPILE_ONLY");
-          interpreter.compile(pyFile.getAbsolutePath());
+          if (cache == null || cache.getCode(pyFile) == null) {
+            // reports a SyntaxError
+            interpreter.compile(FileManager.readFileToString(pyFile), pyFile.getAbsolutePath());
+          }
         } else {
           String scr;
           if (scriptPaths.length > 1) {
@@ -201,7 +206,12 @@ public class JythonScriptRunner implements IScriptRunner {
             log(lvl, "runPython: running script: \n%s", scr);
             interpreter.exec("sys.argv[0] = \"" + scr + "\"");
           }
-          interpreter.execfile(pyFile.getAbsolutePath());
+          PyCode code = cache == null ? null : (PyCode) cache.getCode(pyFile);
+          if (code != null) {
+            interpreter.exec(code);
+          } else {
+            interpreter.execfile(pyFile.getAbsolutePath());
+          }
         }
       } else {
         log(-1, "runPython: invalid arguments");